@@ -0,0 +1,49 @@
+package com.myorg.search;
+
+import java.lang.management.ManagementFactory;
+import java.nio.file.*;
+
+/**
+ * Measures how long it takes to answer the first query, from JVM start: class
+ * loading, stopwords, stemmer and index opening included, as a user launching
+ * Main or SearchServer sees it. Builds the index first if there is none.
+ *
+ * Also the training run of the AppCDS archive built by the cds profile, so it
+ * goes through the same classes as a real start. Only that profile compiles
+ * it, into the jar the archive is made for.
+ *
+ * Usage: StartupBenchmark [indexPath] [query]   (default: the index of TfIdfBuilder)
+ */
+public class StartupBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        long mainStarted = System.currentTimeMillis();
+        Path indexPath = Paths.get(args.length > 0 ? args[0] : TfIdfBuilder.INDEX_PATH);
+        String query = args.length > 1 ? args[1] : "الاقتصاد المغربي";
+
+        if (!Files.exists(indexPath.resolve(IndexManifest.FILE_NAME))) {
+            System.out.println("⚠️ No index in " + indexPath + ", building it first (not timed)");
+            new TfIdfBuilder(null, indexPath, Runtime.getRuntime().availableProcessors(),
+                    Runtime.getRuntime().maxMemory() / 4).runPipeline();
+            mainStarted = System.currentTimeMillis();
+        }
+
+        long start = System.nanoTime();
+        SearchEngine engine = new SearchEngine(null, indexPath, 0);
+        long ready = System.nanoTime();
+        SearchEngine.SearchResponse first = engine.searchWithStats(query, 10);
+        long answered = System.nanoTime();
+        SearchEngine.SearchResponse second = engine.searchWithStats(query, 10);
+
+        long jvmToMain = mainStarted - ManagementFactory.getRuntimeMXBean().getStartTime();
+        System.out.println("\n🚀 Startup benchmark: " + indexPath);
+        System.out.println("=".repeat(60));
+        System.out.printf("   JVM start → main:     %6d ms%n", jvmToMain);
+        System.out.printf("   Engine ready:         %8.1f ms (stopwords, stemmer, index)%n", (ready - start) / 1e6);
+        System.out.printf("   First query:          %8.1f ms, %d results%n",
+                (answered - ready) / 1e6, first.getResults().size());
+        System.out.printf("   Second query:         %8.1f ms%n", second.getStats().getTotalNanos() / 1e6);
+        System.out.printf("   First answer after:   %8.1f ms since JVM start%n", jvmToMain + (answered - start) / 1e6);
+        System.out.println("=".repeat(60));
+    }
+}
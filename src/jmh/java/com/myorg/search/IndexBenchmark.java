@@ -0,0 +1,54 @@
+package com.myorg.search;
+
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Measures index build time and search engine startup time (opening the index)
+ * on corpora of increasing size generated by ScaledCorpus, fed to the
+ * IndexWriter as tokens without preprocessing.
+ *
+ * Usage: IndexBenchmark [documentCounts...]   (default: 10000 100000 1000000)
+ */
+public class IndexBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length == 0
+                ? new int[]{10_000, 100_000, 1_000_000}
+                : Arrays.stream(args).mapToInt(Integer::parseInt).toArray();
+        long memoryBudget = Runtime.getRuntime().maxMemory() / 4;
+
+        System.out.println("🚀 Index build / startup benchmark");
+        ScaledCorpus corpus = new ScaledCorpus(42);
+        System.out.println("=".repeat(60));
+        System.out.printf("%12s %12s %12s %12s %12s%n", "Documents", "Terms", "Build (ms)", "Open (ms)", "Size (MB)");
+
+        Path dir = Files.createTempDirectory("index-benchmark");
+        try {
+            for (int size : sizes) {
+                Path indexPath = dir.resolve("index-" + size + ".bin");
+
+                long start = System.nanoTime();
+                try (IndexWriter writer = new IndexWriter(indexPath, memoryBudget)) {
+                    for (int docId = 0; docId < size; docId++) {
+                        writer.addDocument("doc" + docId, "synthetic", corpus.nextTokens());
+                    }
+                    writer.finish();
+                }
+                long buildMillis = (System.nanoTime() - start) / 1_000_000;
+
+                start = System.nanoTime();
+                IndexSnapshot index = IndexSnapshot.of(InvertedIndex.open(indexPath));
+                long openMillis = (System.nanoTime() - start) / 1_000_000;
+
+                System.out.printf("%12d %12d %12d %12d %12.1f%n", size, index.getTermCount(),
+                        buildMillis, openMillis, Files.size(indexPath) / (1024.0 * 1024.0));
+                Files.delete(indexPath);
+                Files.delete(SegmentStatistics.pathFor(indexPath));
+            }
+        } finally {
+            Files.deleteIfExists(dir);
+        }
+        System.out.println("=".repeat(60));
+    }
+}
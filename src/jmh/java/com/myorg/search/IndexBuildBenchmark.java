@@ -0,0 +1,48 @@
+package com.myorg.search;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TfIdfBuilder.runPipeline over a scaled corpus: preprocessing with a cold stem
+ * cache, index build and the final merge, as run by BuildMatrixOnly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class IndexBuildBenchmark {
+
+    @Param({"1000", "10000"})
+    public int documents;
+
+    private Path dir;
+    private Path corpus;
+    private Path indexPath;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("index-build-benchmark");
+        corpus = dir.resolve("Corpus");
+        indexPath = dir.resolve("index");
+        new ScaledCorpus(42).write(corpus, documents);
+    }
+
+    @Benchmark
+    public long runPipeline() throws Exception {
+        Preprocessor preprocessor = new Preprocessor(new StemCache(200_000), corpus, null);
+        new TfIdfBuilder(preprocessor, indexPath, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().maxMemory() / 4).runPipeline();
+        return IndexManifest.load(indexPath).getFiles().size();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ScaledCorpus.delete(dir);
+    }
+}
@@ -0,0 +1,49 @@
+package com.myorg.search;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.*;
+
+/**
+ * Preprocessor.preprocessText over the bundled documents, with a stem cache large
+ * enough for the whole vocabulary and with one that holds almost nothing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreprocessorBenchmark {
+
+    @Param({"200000", "16"})
+    public int stemCacheCapacity;
+
+    private Preprocessor preprocessor;
+    private List<String> documents;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        Path corpus = Paths.get(Preprocessor.CORPUS_PATH);
+        preprocessor = new Preprocessor(new StemCache(stemCacheCapacity), corpus, null);
+        try (Stream<Path> walk = Files.walk(corpus)) {
+            documents = new ArrayList<>();
+            for (Path file : walk.filter(p -> p.toString().endsWith(".txt")).sorted().collect(Collectors.toList())) {
+                documents.add(Files.readString(file, StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Benchmark
+    public List<String> preprocessText() {
+        String document = documents.get(next);
+        next = (next + 1) % documents.size();
+        return preprocessor.preprocessText(document);
+    }
+}
@@ -0,0 +1,100 @@
+package com.myorg.search;
+
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares the latency of MaxScore ranking, on one thread and partitioned over
+ * a fork/join pool, with exhaustive term-at-a-time ranking on an index of ScaledCorpus tokens,
+ * and of BM25 MaxScore with exhaustive BM25. That they return the same top-K
+ * documents is checked by ScorerTest.
+ *
+ * Usage: QueryBenchmark [documentCount] [queryCount] [topK]   (default: 100000 1000 10)
+ */
+public class QueryBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int documentCount = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int queryCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int topK = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        System.out.println("🚀 Query benchmark: " + documentCount + " documents, "
+                + queryCount + " queries, top " + topK);
+        System.out.println("=".repeat(60));
+
+        Path indexPath = Files.createTempFile("query-benchmark", ".bin");
+        try {
+            ScaledCorpus corpus = new ScaledCorpus(42);
+            try (IndexWriter writer = new IndexWriter(indexPath, Runtime.getRuntime().maxMemory() / 4)) {
+                for (int docId = 0; docId < documentCount; docId++) {
+                    writer.addDocument("doc" + docId, "synthetic", corpus.nextTokens());
+                }
+                writer.finish();
+            }
+            IndexSnapshot index = IndexSnapshot.of(InvertedIndex.open(indexPath));
+
+            // 2-5 term queries drawn from the same term distribution as the documents
+            Random random = new Random(7);
+            List<SparseVector> queries = new ArrayList<>(queryCount);
+            List<SparseVector> bm25Queries = new ArrayList<>(queryCount);
+            for (int q = 0; q < queryCount; q++) {
+                SparseVector.Builder queryVector = new SparseVector.Builder();
+                SparseVector.Builder termCounts = new SparseVector.Builder();
+                int terms = 2 + random.nextInt(4);
+                for (int i = 0; i < terms; i++) {
+                    int termId = index.getTermId(corpus.nextWord());
+                    if (termId < 0) continue;
+                    termCounts.add(termId, 1.0f);
+                    double idf = index.getIdf(termId);
+                    if (idf > 0.0) queryVector.add(termId, (float) (idf / terms));
+                }
+                queries.add(queryVector.build());
+                bm25Queries.add(termCounts.build());
+            }
+
+            CosineSimilarity cosine = new CosineSimilarity();
+            ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+            CosineSimilarity parallel = new CosineSimilarity(pool, CosineSimilarity.DEFAULT_PARALLEL_THRESHOLD);
+            Bm25 bm25 = new Bm25();
+
+            // Warm up, then time each evaluator
+            for (int round = 0; round < 2; round++) {
+                long exhaustive = 0, maxScore = 0, parallelMaxScore = 0, bm25Exhaustive = 0, bm25MaxScore = 0;
+                for (SparseVector queryVector : queries) {
+                    long start = System.nanoTime();
+                    cosine.rankDocumentsExhaustive(queryVector, index, topK);
+                    exhaustive += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    cosine.rankDocuments(queryVector, index, topK);
+                    maxScore += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    parallel.rankDocuments(queryVector, index, topK);
+                    parallelMaxScore += System.nanoTime() - start;
+                }
+                for (SparseVector queryVector : bm25Queries) {
+                    long start = System.nanoTime();
+                    bm25.rankDocumentsExhaustive(queryVector, index, topK);
+                    bm25Exhaustive += System.nanoTime() - start;
+                    start = System.nanoTime();
+                    bm25.rankDocuments(queryVector, index, topK);
+                    bm25MaxScore += System.nanoTime() - start;
+                }
+                if (round == 1) {
+                    System.out.printf("   Exhaustive: %.3f ms/query%n", exhaustive / 1e6 / queryCount);
+                    System.out.printf("   MaxScore:   %.3f ms/query%n", maxScore / 1e6 / queryCount);
+                    System.out.printf("   Parallel:   %.3f ms/query (%d threads)%n",
+                            parallelMaxScore / 1e6 / queryCount, pool.getParallelism());
+                    System.out.printf("   BM25 exhaustive: %.3f ms/query%n", bm25Exhaustive / 1e6 / queryCount);
+                    System.out.printf("   BM25 MaxScore:   %.3f ms/query%n", bm25MaxScore / 1e6 / queryCount);
+                }
+            }
+
+            pool.shutdown();
+            System.out.println("=".repeat(60));
+        } finally {
+            Files.deleteIfExists(indexPath);
+            Files.deleteIfExists(SegmentStatistics.pathFor(indexPath));
+        }
+    }
+}
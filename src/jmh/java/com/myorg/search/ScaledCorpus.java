@@ -0,0 +1,119 @@
+package com.myorg.search;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.*;
+
+/**
+ * ScaledCorpus - Generates an Arabic corpus of any size from the bundled Corpus.
+ * Every generated document takes the folder (source and category) and length of a
+ * bundled document and samples its words from the word frequencies of the whole
+ * bundled corpus. A small share of the words get a random letter appended, so the
+ * vocabulary keeps growing with the corpus size as it does for real news text.
+ * Documents are either written as files, for benchmarks going through the
+ * preprocessor, or returned as token lists to feed an IndexWriter directly.
+ */
+public class ScaledCorpus {
+
+    private static final String LETTERS = "ابتثجحخدذرزسشصضطظعغفقكلمنهوي";
+    private static final double NEW_WORD_RATE = 0.02;
+    private static final int WORDS_PER_LINE = 15;
+
+    private final List<Path> folders = new ArrayList<>();
+    private final List<Integer> lengths = new ArrayList<>();
+    private final List<String> words = new ArrayList<>();
+    private final Random random;
+
+    /**
+     * @param source Bundled corpus folder, scanned recursively for .txt documents
+     * @param seed Random seed, so generated corpora are reproducible
+     */
+    public ScaledCorpus(Path source, long seed) throws IOException {
+        this.random = new Random(seed);
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(source)) {
+            files = walk.filter(p -> p.toString().endsWith(".txt")).sorted().collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            String[] tokens = Files.readString(file, StandardCharsets.UTF_8).trim().split("\\s+");
+            if (tokens.length == 0 || tokens[0].isEmpty()) continue;
+            folders.add(source.relativize(file.getParent()));
+            lengths.add(tokens.length);
+            words.addAll(Arrays.asList(tokens));
+        }
+        if (words.isEmpty()) {
+            throw new IOException("No documents found in " + source);
+        }
+        System.out.println("🧪 Scaling corpus: " + lengths.size() + " documents, " + words.size() + " words");
+    }
+
+    /** Default generator over the bundled corpus */
+    public ScaledCorpus(long seed) throws IOException {
+        this(Paths.get(Preprocessor.CORPUS_PATH), seed);
+    }
+
+    /**
+     * Write documentCount documents under target, mirroring the folder layout of the bundled corpus.
+     */
+    public void write(Path target, int documentCount) throws IOException {
+        for (int i = 0; i < documentCount; i++) {
+            int template = i % lengths.size();
+            Path folder = target.resolve(folders.get(template).toString());
+            Files.createDirectories(folder);
+            Files.writeString(folder.resolve("doc" + i + ".txt"), nextDocument(lengths.get(template)),
+                    StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Raw document text of the given number of words */
+    public String nextDocument(int length) {
+        StringBuilder sb = new StringBuilder(length * 8);
+        for (int i = 0; i < length; i++) {
+            sb.append(nextWord()).append(i % WORDS_PER_LINE == WORDS_PER_LINE - 1 ? '\n' : ' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Tokens of a document as the words sampled, without preprocessing, with the
+     * length of a random bundled document.
+     */
+    public List<String> nextTokens() {
+        int length = lengths.get(random.nextInt(lengths.size()));
+        List<String> tokens = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            tokens.add(nextWord());
+        }
+        return tokens;
+    }
+
+    /** Raw query text: a few words drawn from the corpus word frequencies */
+    public String nextQuery(int length) {
+        StringJoiner query = new StringJoiner(" ");
+        for (int i = 0; i < length; i++) {
+            query.add(words.get(random.nextInt(words.size())));
+        }
+        return query.toString();
+    }
+
+    /** A word drawn from the corpus word frequencies, sometimes with a letter appended */
+    public String nextWord() {
+        String word = words.get(random.nextInt(words.size()));
+        if (random.nextDouble() < NEW_WORD_RATE) {
+            word += LETTERS.charAt(random.nextInt(LETTERS.length()));
+        }
+        return word;
+    }
+
+    /** Delete a generated corpus or index folder */
+    static void delete(Path dir) throws IOException {
+        if (dir == null || !Files.exists(dir)) return;
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+}
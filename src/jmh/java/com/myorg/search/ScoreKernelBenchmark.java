@@ -0,0 +1,109 @@
+package com.myorg.search;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scalar against Vector API ScoreKernel: the kernels alone over dense blocks of
+ * one segment, and ranking queries made only of frequent terms (those with
+ * dense count blocks) on a synthetic index. With "vector", ScoreKernel.best()
+ * is used; it falls back to the scalar kernel if the incubator module is missing.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "--add-modules=jdk.incubator.vector"})
+public class ScoreKernelBenchmark {
+
+    private static final int QUERY_COUNT = 200;
+
+    @Param({"scalar", "vector"})
+    public String kernel;
+
+    @Param({"100000"})
+    public int documents;
+
+    private ScoreKernel scoreKernel;
+    private Path indexPath;
+    private IndexSnapshot snapshot;
+    private CosineSimilarity cosine;
+    private SparseVector[] queries;
+    private float[] counts;
+    private double[] scales;
+    private double[] accumulators;
+    private double[] scores;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        scoreKernel = kernel.equals("vector") ? ScoreKernel.best() : ScoreKernel.scalar();
+        System.out.println("⚡ Kernel: " + scoreKernel);
+
+        indexPath = Files.createTempFile("kernel-benchmark", ".bin");
+        ScaledCorpus corpus = new ScaledCorpus(42);
+        try (IndexWriter writer = new IndexWriter(indexPath, Runtime.getRuntime().maxMemory() / 4)) {
+            for (int docId = 0; docId < documents; docId++) {
+                writer.addDocument("doc" + docId, "synthetic", corpus.nextTokens());
+            }
+            writer.finish();
+        }
+        InvertedIndex index = InvertedIndex.open(indexPath);
+        snapshot = IndexSnapshot.of(index);
+        cosine = new CosineSimilarity(null, Long.MAX_VALUE, scoreKernel);
+
+        List<Integer> frequentTerms = new ArrayList<>();
+        for (int termId = 0; termId < snapshot.getTermCount(); termId++) {
+            if (index.getDenseCounts(termId) != null) frequentTerms.add(termId);
+        }
+        Random random = new Random(7);
+        queries = new SparseVector[QUERY_COUNT];
+        for (int q = 0; q < QUERY_COUNT; q++) {
+            SparseVector.Builder queryVector = new SparseVector.Builder();
+            int terms = 2 + random.nextInt(3);
+            for (int i = 0; i < terms; i++) {
+                int termId = frequentTerms.get(random.nextInt(frequentTerms.size()));
+                queryVector.add(termId, (float) (snapshot.getIdf(termId) / terms));
+            }
+            queries[q] = queryVector.build();
+        }
+
+        counts = index.getDenseCounts(frequentTerms.get(0));
+        scales = index.getDocumentScales();
+        accumulators = new double[documents];
+        scores = new double[documents];
+    }
+
+    @Benchmark
+    public double[] accumulate() {
+        scoreKernel.accumulate(accumulators, counts, 0, 0.5);
+        return accumulators;
+    }
+
+    /** One dense term from scratch: clear, accumulate, scale (scaling in place again would underflow) */
+    @Benchmark
+    public double[] accumulateAndScale() {
+        Arrays.fill(scores, 0.0);
+        scoreKernel.accumulate(scores, counts, 0, 0.5);
+        scoreKernel.multiply(scores, scales, 0);
+        return scores;
+    }
+
+    @Benchmark
+    public List<TopKCollector.ScoredDocument> rankFrequentTerms() {
+        SparseVector query = queries[next];
+        next = (next + 1) % queries.length;
+        return cosine.rankDocuments(query, snapshot, 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(indexPath);
+        Files.deleteIfExists(SegmentStatistics.pathFor(indexPath));
+    }
+}
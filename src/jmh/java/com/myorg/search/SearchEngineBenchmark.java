@@ -0,0 +1,79 @@
+package com.myorg.search;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SearchEngine startup (opening the index) and SearchEngine.search over an index
+ * built from a scaled corpus. Queries are 1-4 words drawn from the corpus,
+ * searched with and without the result cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g"})
+public class SearchEngineBenchmark {
+
+    private static final int QUERY_COUNT = 1_000;
+
+    @Param({"10000"})
+    public int documents;
+
+    @Param({"10"})
+    public int topK;
+
+    /** Result cache capacity; 0 measures every query ranked from scratch */
+    @Param({"0", "1024"})
+    public int resultCache;
+
+    private Path dir;
+    private Path indexPath;
+    private Preprocessor preprocessor;
+    private SearchEngine engine;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        dir = Files.createTempDirectory("search-benchmark");
+        Path corpus = dir.resolve("Corpus");
+        indexPath = dir.resolve("index");
+        ScaledCorpus scaledCorpus = new ScaledCorpus(42);
+        scaledCorpus.write(corpus, documents);
+
+        preprocessor = new Preprocessor(new StemCache(200_000), corpus, null);
+        new TfIdfBuilder(preprocessor, indexPath, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().maxMemory() / 4).runPipeline();
+        engine = new SearchEngine(preprocessor, indexPath, resultCache);
+
+        Random random = new Random(7);
+        queries = new String[QUERY_COUNT];
+        for (int i = 0; i < QUERY_COUNT; i++) {
+            queries[i] = scaledCorpus.nextQuery(1 + random.nextInt(4));
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public SearchEngine load() throws IOException {
+        return new SearchEngine(preprocessor, indexPath);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<SearchEngine.SearchResult> search() {
+        String query = queries[next];
+        next = (next + 1) % queries.length;
+        return engine.search(query, topK);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        ScaledCorpus.delete(dir);
+    }
+}
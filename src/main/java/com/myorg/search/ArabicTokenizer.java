@@ -0,0 +1,99 @@
+package com.myorg.search;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * ArabicTokenizer - Single-pass Arabic normalizer and tokenizer.
+ *
+ * Walks the text once, character by character, and emits each token as soon
+ * as it ends, without building normalized copies of the whole text:
+ *   - characters outside the Arabic script (Latin letters and digits, punctuation,
+ *     diacritics, tatweel...) are dropped without splitting the token
+ *   - أ إ آ are folded to ا, ة to ه and ى to ي
+ *   - tokens are separated by runs of ASCII whitespace (space, tab, line feed,
+ *     vertical tab, form feed, carriage return)
+ * The output is identical to the former regex chain
+ * (strip non-Arabic, strip diacritics, fold, collapse whitespace, split).
+ */
+public final class ArabicTokenizer {
+
+    /** BMP characters that belong to the Arabic script and are not diacritics */
+    private static final boolean[] ARABIC = new boolean[Character.MAX_VALUE + 1];
+
+    static {
+        for (int c = 0; c <= Character.MAX_VALUE; c++) {
+            ARABIC[c] = isArabicCodePoint(c);
+        }
+    }
+
+    private ArabicTokenizer() {
+    }
+
+    private static boolean isArabicCodePoint(int codePoint) {
+        // Diacritics (fathatan .. sukun) are listed explicitly; they are also outside the Arabic script
+        return (codePoint < '\u064B' || codePoint > '\u0652')
+                && Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.ARABIC;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static char fold(char c) {
+        switch (c) {
+            case 'أ':
+            case 'إ':
+            case 'آ':
+                return 'ا';
+            case 'ة':
+                return 'ه';
+            case 'ى':
+                return 'ي';
+            default:
+                return c;
+        }
+    }
+
+    /**
+     * Normalize the text and pass every token to the sink, in order.
+     */
+    public static void tokenize(CharSequence text, Consumer<String> sink) {
+        char[] token = new char[32];
+        int length = 0;
+        int n = text.length();
+        for (int i = 0; i < n; i++) {
+            char c = text.charAt(i);
+            if (isSeparator(c)) {
+                if (length > 0) {
+                    sink.accept(new String(token, 0, length));
+                    length = 0;
+                }
+                continue;
+            }
+
+            boolean keep;
+            char low = 0;
+            if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(text.charAt(i + 1))) {
+                low = text.charAt(++i);
+                keep = isArabicCodePoint(Character.toCodePoint(c, low));
+            } else {
+                keep = ARABIC[c];
+            }
+            if (!keep) continue;
+
+            if (length + 2 > token.length) {
+                token = Arrays.copyOf(token, token.length * 2);
+            }
+            if (low != 0) {
+                token[length++] = c;
+                token[length++] = low;
+            } else {
+                token[length++] = fold(c);
+            }
+        }
+        if (length > 0) {
+            sink.accept(new String(token, 0, length));
+        }
+    }
+}
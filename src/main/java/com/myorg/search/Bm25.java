@@ -0,0 +1,177 @@
+package com.myorg.search;
+
+import java.util.*;
+
+/**
+ * Bm25 - Okapi BM25 ranking, from the raw term counts and document lengths of
+ * the index:
+ *
+ *   score(d) = Σ qtf × idf(t) × tf × (k1 + 1) / (tf + k1 × (1 − b + b × |d| / avgdl))
+ *   idf(t)   = ln(1 + (N − df + 0.5) / (df + 0.5))
+ *
+ * N, df and avgdl are taken over the whole snapshot, deleted documents
+ * included as for the cosine IDF, so every segment scores alike. k1 sets how
+ * fast repeated occurrences saturate, b how much long documents are penalized.
+ *
+ * Postings are traversed document-at-a-time with MaxScore like CosineSimilarity.
+ * The upper bound of a term in a segment follows from its largest count and
+ * largest count / length, stored by IndexWriter: the term frequency part grows
+ * with tf and shrinks with |d|, so for any k1, b and avgdl it is at most
+ * (k1 + 1) / (1 + k1 × (1 − b) / maxCount + k1 × b / (avgdl × maxCountRatio)).
+ * Unlike cosine scores, which depend on the norm of each document, BM25
+ * contributions are capped by k1 + 1, so bounds are tight and prune well.
+ * A BooleanQuery filter is advanced together with the cursors, see MaxScore.
+ */
+public class Bm25 implements Scorer {
+
+    public static final double DEFAULT_K1 = 1.2;
+    public static final double DEFAULT_B = 0.75;
+
+    private final double k1;
+    private final double b;
+
+    public Bm25() {
+        this(DEFAULT_K1, DEFAULT_B);
+    }
+
+    /**
+     * @param k1 Term frequency saturation, usually 1.2-2.0; 0 only counts whether a term occurs
+     * @param b Length normalization from 0 (none) to 1 (full)
+     */
+    public Bm25(double k1, double b) {
+        if (!(k1 >= 0.0) || Double.isInfinite(k1) || !(b >= 0.0 && b <= 1.0)) {
+            throw new IllegalArgumentException("BM25 needs k1 >= 0 and 0 <= b <= 1, got k1=" + k1 + ", b=" + b);
+        }
+        this.k1 = k1;
+        this.b = b;
+    }
+
+    public double getK1() {
+        return k1;
+    }
+
+    public double getB() {
+        return b;
+    }
+
+    @Override
+    public String getName() {
+        return "bm25(k1=" + k1 + ",b=" + b + ")";
+    }
+
+    /** BM25 IDF: always positive, even for terms in more than half the documents */
+    public static double inverseDocumentFrequency(int documentCount, int documentFrequency) {
+        return Math.log(1.0 + (documentCount - documentFrequency + 0.5) / (documentFrequency + 0.5));
+    }
+
+    /**
+     * Query term counts: a term repeated in the query counts as often.
+     */
+    @Override
+    public SparseVector queryVector(SparseVector termCounts, int queryLength, IndexSnapshot snapshot) {
+        return termCounts;
+    }
+
+    /**
+     * Rank documents against the query terms with MaxScore dynamic pruning.
+     * Results are the same as rankDocumentsExhaustive.
+     */
+    @Override
+    public List<TopKCollector.ScoredDocument> rankDocuments(SparseVector queryVector, IndexSnapshot snapshot,
+                                                            BooleanQuery filter, int topK) {
+        TopKCollector collector = new TopKCollector(topK);
+        if (queryVector.isEmpty() || topK <= 0) {
+            return collector.results();
+        }
+        double averageLength = snapshot.getAverageDocumentLength();
+        List<IndexSnapshot.Segment> segments = snapshot.getSegments();
+        for (int s = 0; s < segments.size(); s++) {
+            rankSegment(queryVector, snapshot, filter, segments.get(s), snapshot.getDocBase(s), averageLength,
+                    collector);
+        }
+        return collector.results();
+    }
+
+    private void rankSegment(SparseVector queryVector, IndexSnapshot snapshot, BooleanQuery filter,
+                             IndexSnapshot.Segment segment, int docBase, double averageLength,
+                             TopKCollector collector) {
+        InvertedIndex index = segment.getIndex();
+        DocIdIterator matches = filter != null ? filter.iterator(snapshot, segment) : null;
+
+        List<MaxScore.Cursor> cursors = new ArrayList<>();
+        for (int q = 0; q < queryVector.size(); q++) {
+            int termId = queryVector.getTermId(q);
+            int localId = segment.getLocalTermId(termId);
+            if (localId < 0) continue;
+            InvertedIndex.PostingList postings = index.getPostings(localId);
+            if (postings == null) continue;
+            double weight = queryVector.getWeight(q)
+                    * inverseDocumentFrequency(snapshot.getDocumentCount(), snapshot.getDocumentFrequency(termId));
+            double saturation = 1.0 + k1 * (1.0 - b) / index.getMaxCount(localId)
+                    + k1 * b / (averageLength * index.getMaxCountRatio(localId));
+            cursors.add(new MaxScore.Cursor(postings, Integer.MAX_VALUE, weight,
+                    weight * (k1 + 1.0) / saturation));
+        }
+
+        MaxScore.rank(cursors, new MaxScore.Scoring() {
+            @Override
+            public double documentFactor(int docId) {
+                return lengthNorm(index.getDocumentLength(docId), averageLength);
+            }
+
+            @Override
+            public double termScore(double weight, int count, double lengthNorm) {
+                return weight * count * (k1 + 1.0) / (count + lengthNorm);
+            }
+
+            @Override
+            public double documentScore(double score, double lengthNorm) {
+                return score;
+            }
+        }, segment, matches, docBase, collector);
+    }
+
+    /** k1 × (1 − b + b × |d| / avgdl): the length-dependent part of the denominator */
+    private double lengthNorm(int documentLength, double averageLength) {
+        return k1 * (1.0 - b + b * documentLength / averageLength);
+    }
+
+    /**
+     * Rank documents by accumulating scores term-at-a-time over the full postings
+     * of every query term. Reference implementation for rankDocuments.
+     */
+    public List<TopKCollector.ScoredDocument> rankDocumentsExhaustive(SparseVector queryVector,
+                                                                      IndexSnapshot snapshot, int topK) {
+        TopKCollector collector = new TopKCollector(topK);
+        double averageLength = snapshot.getAverageDocumentLength();
+        List<IndexSnapshot.Segment> segments = snapshot.getSegments();
+        for (int s = 0; s < segments.size(); s++) {
+            IndexSnapshot.Segment segment = segments.get(s);
+            InvertedIndex index = segment.getIndex();
+            double[] accumulators = new double[index.getDocumentCount()];
+            boolean[] touched = new boolean[index.getDocumentCount()];
+            for (int q = 0; q < queryVector.size(); q++) {
+                int termId = queryVector.getTermId(q);
+                int localId = segment.getLocalTermId(termId);
+                if (localId < 0) continue;
+                InvertedIndex.PostingList postings = index.getPostings(localId);
+                if (postings == null) continue;
+                double weight = queryVector.getWeight(q)
+                        * inverseDocumentFrequency(snapshot.getDocumentCount(), snapshot.getDocumentFrequency(termId));
+                for (int i = 0; i < postings.size(); i++) {
+                    int docId = postings.getDocId(i);
+                    int count = postings.getCount(i);
+                    double lengthNorm = lengthNorm(index.getDocumentLength(docId), averageLength);
+                    accumulators[docId] += weight * count * (k1 + 1.0) / (count + lengthNorm);
+                    touched[docId] = true;
+                }
+            }
+            for (int docId = 0; docId < accumulators.length; docId++) {
+                if (touched[docId] && segment.isLive(docId)) {
+                    collector.collect(snapshot.getDocBase(s) + docId, accumulators[docId]);
+                }
+            }
+        }
+        return collector.results();
+    }
+}
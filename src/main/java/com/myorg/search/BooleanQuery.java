@@ -0,0 +1,265 @@
+package com.myorg.search;
+
+import java.util.*;
+
+/**
+ * BooleanQuery - Query with AND, OR, NOT, required and excluded parts, parsed by
+ * QueryParser. It decides which documents match; the scorer then ranks only
+ * those, on the terms that are not negated, so "+كرة -السلة" ranks by كرة among
+ * the documents without سلة.
+ *
+ * The tree is compiled per segment into DocIdIterators over the postings, which
+ * the scorer advances together with the postings of the query terms: AND
+ * intersects its children rarest first with galloping advance() over the skip
+ * tables, so the work follows the rarest part of a conjunction rather than the
+ * most common one. NOT only subtracts from the other children of an AND: on its
+ * own it matches nothing, rather than every document of the index. Two NOTs
+ * cancel out, so NOT NOT x matches x.
+ */
+public class BooleanQuery {
+
+    private final Node root;
+    private final List<String> terms;
+    private final List<PhraseQuery> phrases;
+
+    /**
+     * @param root What a document must match, or null for every document with a query term
+     * @param terms Stems of the query that are not negated, in query order, for scoring
+     * @param phrases Phrases of the query that are not negated
+     */
+    public BooleanQuery(Node root, List<String> terms, List<PhraseQuery> phrases) {
+        this.root = root;
+        this.terms = List.copyOf(terms);
+        this.phrases = List.copyOf(phrases);
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    /** Stems of the query that are not negated, in query order */
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    /** Phrases of the query that are not negated */
+    public List<PhraseQuery> getPhrases() {
+        return phrases;
+    }
+
+    /**
+     * Documents of a segment matching the query, deleted ones included.
+     *
+     * @return The iterator, or null if the query has no root and matches every document with a query term
+     */
+    public DocIdIterator iterator(IndexSnapshot snapshot, IndexSnapshot.Segment segment) {
+        return root == null ? null : root.iterator(snapshot, segment);
+    }
+
+    /** The matching part of the query in a canonical form, e.g. "كر" AND NOT (سل OR يد) */
+    @Override
+    public String toString() {
+        return root == null ? "" : root.toString();
+    }
+
+    /** Whether a node excludes documents, once pairs of NOTs around it cancel out */
+    private static boolean isNegated(Node node) {
+        boolean negated = false;
+        while (node instanceof Not) {
+            node = ((Not) node).child;
+            negated = !negated;
+        }
+        return negated;
+    }
+
+    /** The node without the NOTs around it */
+    private static Node withoutNot(Node node) {
+        while (node instanceof Not) node = ((Not) node).child;
+        return node;
+    }
+
+    /**
+     * Node - Part of a query tree.
+     */
+    public abstract static class Node {
+        /** Documents of a segment matching this part of the query, deleted ones included */
+        public abstract DocIdIterator iterator(IndexSnapshot snapshot, IndexSnapshot.Segment segment);
+
+        /** toString() in parentheses when it combines several parts */
+        String toOperand() {
+            return toString();
+        }
+    }
+
+    /**
+     * Term - Documents containing a stem.
+     */
+    public static class Term extends Node {
+        private final String term;
+
+        public Term(String term) {
+            this.term = term;
+        }
+
+        public String getTerm() {
+            return term;
+        }
+
+        @Override
+        public DocIdIterator iterator(IndexSnapshot snapshot, IndexSnapshot.Segment segment) {
+            int termId = snapshot.getTermId(term);
+            int localId = termId >= 0 ? segment.getLocalTermId(termId) : -1;
+            InvertedIndex.PostingList postings = localId >= 0 ? segment.getIndex().getPostings(localId) : null;
+            return postings == null ? new DocIdIterator.Empty() : new DocIdIterator.Postings(postings);
+        }
+
+        @Override
+        public String toString() {
+            return term;
+        }
+    }
+
+    /**
+     * Phrase - Documents containing a PhraseQuery.
+     */
+    public static class Phrase extends Node {
+        private final PhraseQuery phrase;
+
+        public Phrase(PhraseQuery phrase) {
+            this.phrase = phrase;
+        }
+
+        public PhraseQuery getPhrase() {
+            return phrase;
+        }
+
+        @Override
+        public DocIdIterator iterator(IndexSnapshot snapshot, IndexSnapshot.Segment segment) {
+            return phrase.iterator(snapshot, segment);
+        }
+
+        @Override
+        public String toString() {
+            return phrase.toString();
+        }
+    }
+
+    /**
+     * And - Documents matching every child that is not a Not, and none of the
+     * children of the Not children.
+     */
+    public static class And extends Node {
+        private final List<Node> children = new ArrayList<>();
+
+        public And(List<Node> children) {
+            for (Node child : children) {
+                if (child instanceof And) this.children.addAll(((And) child).children);
+                else this.children.add(child);
+            }
+        }
+
+        public List<Node> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        @Override
+        public DocIdIterator iterator(IndexSnapshot snapshot, IndexSnapshot.Segment segment) {
+            List<DocIdIterator> included = new ArrayList<>();
+            List<DocIdIterator> excluded = new ArrayList<>();
+            for (Node child : children) {
+                DocIdIterator iterator = withoutNot(child).iterator(snapshot, segment);
+                if (isNegated(child)) excluded.add(iterator);
+                else included.add(iterator);
+            }
+            if (included.isEmpty()) {
+                return new DocIdIterator.Empty();
+            }
+            DocIdIterator iterator = included.size() == 1 ? included.get(0) : new DocIdIterator.Conjunction(included);
+            if (excluded.isEmpty()) {
+                return iterator;
+            }
+            return new DocIdIterator.Exclusion(iterator,
+                    excluded.size() == 1 ? excluded.get(0) : new DocIdIterator.Disjunction(excluded));
+        }
+
+        @Override
+        String toOperand() {
+            return "(" + this + ")";
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(" AND ");
+            for (Node child : children) joiner.add(child.toOperand());
+            return joiner.toString();
+        }
+    }
+
+    /**
+     * Or - Documents matching at least one child. A Not child matches nothing.
+     */
+    public static class Or extends Node {
+        private final List<Node> children = new ArrayList<>();
+
+        public Or(List<Node> children) {
+            for (Node child : children) {
+                if (child instanceof Or) this.children.addAll(((Or) child).children);
+                else this.children.add(child);
+            }
+        }
+
+        public List<Node> getChildren() {
+            return Collections.unmodifiableList(children);
+        }
+
+        @Override
+        public DocIdIterator iterator(IndexSnapshot snapshot, IndexSnapshot.Segment segment) {
+            List<DocIdIterator> iterators = new ArrayList<>();
+            for (Node child : children) {
+                if (!isNegated(child)) iterators.add(withoutNot(child).iterator(snapshot, segment));
+            }
+            if (iterators.isEmpty()) {
+                return new DocIdIterator.Empty();
+            }
+            return iterators.size() == 1 ? iterators.get(0) : new DocIdIterator.Disjunction(iterators);
+        }
+
+        @Override
+        String toOperand() {
+            return "(" + this + ")";
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(" OR ");
+            for (Node child : children) joiner.add(child.toOperand());
+            return joiner.toString();
+        }
+    }
+
+    /**
+     * Not - Documents not matching the child, only meaningful as a child of an
+     * And, unless the child is a Not too.
+     */
+    public static class Not extends Node {
+        private final Node child;
+
+        public Not(Node child) {
+            this.child = child;
+        }
+
+        public Node getChild() {
+            return child;
+        }
+
+        @Override
+        public DocIdIterator iterator(IndexSnapshot snapshot, IndexSnapshot.Segment segment) {
+            return isNegated(this) ? new DocIdIterator.Empty() : withoutNot(this).iterator(snapshot, segment);
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + child.toOperand();
+        }
+    }
+}
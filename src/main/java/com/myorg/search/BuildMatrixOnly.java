@@ -1,21 +1,39 @@
 package com.myorg.search;
 
+import java.util.Arrays;
+
 /**
- * Simple class to ONLY build the TF-IDF matrix.
+ * Simple class to ONLY build the TF-IDF index.
  * No search engine, no interactive mode.
+ * Pass "--csv" to also export the dense TF-IDF matrix,
+ * "--update" to only index new, changed and removed files of an existing index,
+ * "--positions" to record token positions for phrase queries,
+ * and "--threads=N" to choose how many threads preprocess the corpus.
  */
 public class BuildMatrixOnly {
     public static void main(String[] args) {
-        System.out.println("🚀 Building TF-IDF Matrix ONLY...");
+        System.out.println("🚀 Building TF-IDF Index ONLY...");
         System.out.println("=".repeat(60));
         
         try {
-            TfIdfBuilder builder = new TfIdfBuilder();
-            builder.runPipeline();
+            int threads = Runtime.getRuntime().availableProcessors();
+            for (String arg : args) {
+                if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                }
+            }
+            TfIdfBuilder builder = new TfIdfBuilder(threads);
+            builder.setRecordPositions(Arrays.asList(args).contains("--positions"));
+            if (Arrays.asList(args).contains("--update")) {
+                builder.update();
+                builder.awaitMerges();
+            } else {
+                builder.runPipeline(Arrays.asList(args).contains("--csv"));
+            }
             System.out.println("=".repeat(60));
-            System.out.println("✅ Matrix building completed!");
+            System.out.println("✅ Index building completed!");
         } catch (Exception e) {
-            System.err.println("❌ Error building matrix:");
+            System.err.println("❌ Error building index:");
             e.printStackTrace();
             System.exit(1);
         }
@@ -0,0 +1,40 @@
+package com.myorg.search;
+
+import java.util.*;
+
+/**
+ * CollectionStatistics - Document count and document frequencies summed over a
+ * set of segments. IndexWriter adds them to the statistics of the segment it
+ * writes, so the IDF used for document norms covers the whole index.
+ * Deleted documents are counted until their segment is merged away.
+ * Read from the SegmentStatistics files, without opening the segments.
+ */
+public class CollectionStatistics {
+
+    /** Statistics of an index without other segments */
+    public static final CollectionStatistics EMPTY = new CollectionStatistics(Collections.emptyList());
+
+    private final List<SegmentStatistics> segments;
+    private final int documentCount;
+
+    public CollectionStatistics(List<SegmentStatistics> segments) {
+        this.segments = new ArrayList<>(segments);
+        int count = 0;
+        for (SegmentStatistics segment : segments) {
+            count += segment.getDocumentCount();
+        }
+        this.documentCount = count;
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    public int getDocumentFrequency(String term) {
+        int documentFrequency = 0;
+        for (SegmentStatistics segment : segments) {
+            documentFrequency += segment.getDocumentFrequency(term);
+        }
+        return documentFrequency;
+    }
+}
@@ -1,99 +1,410 @@
 package com.myorg.search;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 /**
  * CosineSimilarity module for computing similarity between query and documents.
  * Uses TF-IDF vectors and cosine similarity formula.
+ *
+ * Given a fork/join pool, queries whose terms have many postings are ranked in
+ * parallel: the document ids of every segment are split into ranges, each
+ * range is ranked into its own top-K heap, and the heaps are merged. Queries
+ * below the threshold stay on the calling thread.
  */
-public class CosineSimilarity {
+public class CosineSimilarity implements Scorer {
+
+    /** Postings of the query terms from which a query is ranked in parallel */
+    public static final long DEFAULT_PARALLEL_THRESHOLD = 100_000;
+
+    /** Fewest postings worth a partition of their own */
+    private static final long MIN_PARTITION_POSTINGS = 25_000;
+
+    /**
+     * Filters that may match one document out of DENSE_FILTER_RATIO or more go
+     * through the scores of the dense kernel rather than driving the cursors
+     */
+    private static final int DENSE_FILTER_RATIO = 8;
+
+    private final ForkJoinPool pool;
+    private final long parallelThreshold;
+    private final ScoreKernel kernel;
 
     /**
-     * Compute cosine similarity between two vectors (sparse representation as maps).
+     * Rank every query on the calling thread.
+     */
+    public CosineSimilarity() {
+        this(null, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param pool Pool ranking the partitions of large queries, or null to rank every query on the calling thread
+     * @param parallelThreshold Postings of the query terms, over all segments, from which a query is ranked in parallel
+     */
+    public CosineSimilarity(ForkJoinPool pool, long parallelThreshold) {
+        this(pool, parallelThreshold, ScoreKernel.best());
+    }
+
+    /**
+     * @param kernel Kernel accumulating the dense count blocks of frequent terms
+     */
+    public CosineSimilarity(ForkJoinPool pool, long parallelThreshold, ScoreKernel kernel) {
+        this.pool = pool;
+        this.parallelThreshold = parallelThreshold;
+        this.kernel = kernel;
+    }
+
+    @Override
+    public String getName() {
+        return "cosine";
+    }
+
+    /**
+     * Build TF-IDF vector for the query.
+     * TF-IDF(term) = TF(term in query) × IDF(term from corpus)
+     */
+    @Override
+    public SparseVector queryVector(SparseVector termCounts, int queryLength, IndexSnapshot snapshot) {
+        SparseVector.Builder queryVector = new SparseVector.Builder();
+        for (int i = 0; i < termCounts.size(); i++) {
+            int termId = termCounts.getTermId(i);
+            double tf = termCounts.getWeight(i) / queryLength;
+            double tfidf = tf * snapshot.getIdf(termId);
+
+            if (tfidf > 0.0) {
+                queryVector.add(termId, (float) tfidf);
+            }
+        }
+        return queryVector.build();
+    }
+
+    /**
+     * Compute cosine similarity between two term-id vectors.
      * 
      * Formula: cos(θ) = (A · B) / (||A|| × ||B||)
      * 
-     * @param vectorA First TF-IDF vector (term → weight)
-     * @param vectorB Second TF-IDF vector (term → weight)
+     * @param vectorA First TF-IDF vector
+     * @param vectorB Second TF-IDF vector
      * @return Cosine similarity score [0, 1]
      */
-    public double compute(Map<String, Double> vectorA, Map<String, Double> vectorB) {
+    public double compute(SparseVector vectorA, SparseVector vectorB) {
         if (vectorA.isEmpty() || vectorB.isEmpty()) {
             return 0.0;
         }
 
-        double dotProduct = computeDotProduct(vectorA, vectorB);
-        double magnitudeA = computeMagnitude(vectorA);
-        double magnitudeB = computeMagnitude(vectorB);
-
+        double magnitudeA = vectorA.norm();
+        double magnitudeB = vectorB.norm();
         if (magnitudeA == 0.0 || magnitudeB == 0.0) {
             return 0.0;
         }
 
-        return dotProduct / (magnitudeA * magnitudeB);
+        return vectorA.dot(vectorB) / (magnitudeA * magnitudeB);
+    }
+
+    /**
+     * Rank documents against a query vector using the inverted index.
+     *
+     * Postings are traversed document-at-a-time with MaxScore dynamic pruning,
+     * see MaxScore. Segments are ranked one after the other into the same heap,
+     * so the threshold reached in one segment prunes the next. A segment where
+     * every query term is frequent enough to have a dense count block is scored
+     * term-at-a-time by the ScoreKernel instead. Results are the same as
+     * rankDocumentsExhaustive, whether the query is ranked in parallel or not.
+     *
+     * With a filter, its DocIdIterator is advanced together with the cursors.
+     * Only a filter matching a large part of the segment is combined with the
+     * dense kernel: the documents it returns are read from the kernel's scores.
+     *
+     * @param queryVector Query TF-IDF vector, over the term ids of the snapshot
+     * @param snapshot Segments of the index
+     * @param filter Query the documents must match, or null
+     * @param topK Number of top results to return
+     * @return Top documents, by global document id, sorted by score descending
+     */
+    @Override
+    public List<TopKCollector.ScoredDocument> rankDocuments(
+            SparseVector queryVector,
+            IndexSnapshot snapshot,
+            BooleanQuery filter,
+            int topK) {
+
+        double queryMagnitude = queryVector.norm();
+        if (queryMagnitude == 0.0 || topK <= 0) {
+            return new ArrayList<>();
+        }
+
+        List<Partition> partitions = pool != null ? partition(queryVector, snapshot) : null;
+        if (partitions != null) {
+            return pool.invoke(new PartitionTask(queryVector, queryMagnitude, snapshot, filter, partitions,
+                    0, partitions.size(), topK)).results();
+        }
+
+        TopKCollector collector = new TopKCollector(topK);
+        List<IndexSnapshot.Segment> segments = snapshot.getSegments();
+        for (int s = 0; s < segments.size(); s++) {
+            IndexSnapshot.Segment segment = segments.get(s);
+            rankSegment(queryVector, queryMagnitude, snapshot, filter, segment, snapshot.getDocBase(s),
+                    0, segment.getIndex().getDocumentCount(), collector);
+        }
+        return collector.results();
     }
 
     /**
-     * Compute dot product: A · B = Σ(a_i × b_i)
+     * Split the documents of the snapshot into ranges holding about the same
+     * number of postings of the query terms, at most one per pool thread.
+     *
+     * @return Partitions, or null if the query is too small to rank in parallel
      */
-    private double computeDotProduct(Map<String, Double> vectorA, Map<String, Double> vectorB) {
-        double sum = 0.0;
-        
-        // Iterate over the smaller vector for efficiency
-        Map<String, Double> smaller = vectorA.size() < vectorB.size() ? vectorA : vectorB;
-        Map<String, Double> larger = smaller == vectorA ? vectorB : vectorA;
-
-        for (Map.Entry<String, Double> entry : smaller.entrySet()) {
-            String term = entry.getKey();
-            if (larger.containsKey(term)) {
-                sum += entry.getValue() * larger.get(term);
+    private List<Partition> partition(SparseVector queryVector, IndexSnapshot snapshot) {
+        List<IndexSnapshot.Segment> segments = snapshot.getSegments();
+        long[] segmentPostings = new long[segments.size()];
+        long postings = 0;
+        for (int s = 0; s < segments.size(); s++) {
+            IndexSnapshot.Segment segment = segments.get(s);
+            for (int q = 0; q < queryVector.size(); q++) {
+                int localId = segment.getLocalTermId(queryVector.getTermId(q));
+                if (localId >= 0) segmentPostings[s] += segment.getIndex().getDocumentFrequency(localId);
+            }
+            postings += segmentPostings[s];
+        }
+        if (postings < parallelThreshold) return null;
+        long partitionCount = Math.min(pool.getParallelism(), postings / MIN_PARTITION_POSTINGS);
+        if (partitionCount < 2) return null;
+
+        // Postings are spread evenly enough over the documents of a segment that
+        // equal document ranges get about the same work
+        List<Partition> partitions = new ArrayList<>();
+        for (int s = 0; s < segments.size(); s++) {
+            if (segmentPostings[s] == 0) continue;
+            int documents = segments.get(s).getIndex().getDocumentCount();
+            int pieces = (int) Math.max(1, Math.min(documents, Math.round((double) partitionCount * segmentPostings[s] / postings)));
+            for (int p = 0; p < pieces; p++) {
+                partitions.add(new Partition(s, (int) ((long) documents * p / pieces),
+                        (int) ((long) documents * (p + 1) / pieces)));
             }
         }
-        
-        return sum;
+        return partitions.size() < 2 ? null : partitions;
     }
 
     /**
-     * Compute magnitude (L2 norm): ||A|| = √(Σ(a_i²))
+     * Rank the documents of a segment with ids in [from, to) matching the filter into the collector.
      */
-    private double computeMagnitude(Map<String, Double> vector) {
-        double sumOfSquares = 0.0;
-        
-        for (Double value : vector.values()) {
-            sumOfSquares += value * value;
-        }
-        
-        return Math.sqrt(sumOfSquares);
+    private void rankSegment(SparseVector queryVector, double queryMagnitude, IndexSnapshot snapshot,
+                             BooleanQuery filter, IndexSnapshot.Segment segment, int docBase, int from, int to,
+                             TopKCollector collector) {
+        InvertedIndex index = segment.getIndex();
+        DocIdIterator matches = filter != null ? filter.iterator(snapshot, segment) : null;
+
+        // One cursor per query term. Document weights are tf × idf, so the IDF
+        // goes into the multiplier of the term.
+        List<MaxScore.Cursor> cursors = new ArrayList<>();
+        List<float[]> denseCounts = new ArrayList<>();
+        for (int q = 0; q < queryVector.size(); q++) {
+            int termId = queryVector.getTermId(q);
+            int localId = segment.getLocalTermId(termId);
+            if (localId < 0) continue;
+            InvertedIndex.PostingList postings = index.getPostings(localId);
+            if (postings == null) continue;
+            double multiplier = queryVector.getWeight(q) / queryMagnitude * snapshot.getIdf(termId);
+            if (multiplier <= 0.0) continue;
+            MaxScore.Cursor cursor = new MaxScore.Cursor(postings, to, multiplier,
+                    multiplier * index.getMaxScore(localId));
+            cursor.advance(from);
+            cursors.add(cursor);
+            denseCounts.add(index.getDenseCounts(localId));
+        }
+
+        // Only frequent terms: MaxScore can prune little, scoring every document with the kernel is faster
+        boolean allDense = !cursors.isEmpty() && !denseCounts.contains(null)
+                && (matches == null || matches.cost() * DENSE_FILTER_RATIO >= index.getDocumentCount());
+        if (allDense) {
+            rankDense(cursors, denseCounts, index, segment, matches, docBase, from, to, collector);
+            return;
+        }
+
+        // Σ multiplier × count, scaled by 1 / (length × norm) into Σ q_i × w_i / |d|
+        MaxScore.rank(cursors, new MaxScore.Scoring() {
+            @Override
+            public double documentFactor(int docId) {
+                double documentNorm = index.getDocumentNorm(docId);
+                return documentNorm == 0.0 ? Double.NaN : 1.0 / (index.getDocumentLength(docId) * documentNorm);
+            }
+
+            @Override
+            public double termScore(double multiplier, int count, double scale) {
+                return multiplier * count;
+            }
+
+            @Override
+            public double documentScore(double dot, double scale) {
+                return dot * scale;
+            }
+        }, segment, matches, docBase, collector);
     }
 
     /**
-     * Rank all documents against a query vector.
-     * 
-     * @param queryVector Query TF-IDF vector
-     * @param documentVectors All document TF-IDF vectors (docName → vector)
+     * Rank the documents with ids in [from, to) of a segment matching the filter
+     * term-at-a-time, from the dense count blocks of the query terms.
+     *
+     * @param matches Documents matching the filter, or null to rank every document
+     */
+    private void rankDense(List<MaxScore.Cursor> cursors, List<float[]> denseCounts, InvertedIndex index,
+                           IndexSnapshot.Segment segment, DocIdIterator matches, int docBase, int from, int to,
+                           TopKCollector collector) {
+        double[] scores = new double[to - from];
+        for (int i = 0; i < cursors.size(); i++) {
+            kernel.accumulate(scores, denseCounts.get(i), from, cursors.get(i).weight);
+        }
+        kernel.multiply(scores, index.getDocumentScales(), from);
+
+        // Documents come in increasing id order, so a tie with the threshold never enters the heap
+        double threshold = collector.threshold();
+        int docId = matches != null ? matches.advance(from) : from;
+        while (docId < to) {
+            double score = scores[docId - from];
+            if (score > threshold && segment.isLive(docId)) {
+                collector.collect(docBase + docId, score);
+                threshold = collector.threshold();
+            }
+            docId = matches != null ? matches.nextDoc() : docId + 1;
+        }
+    }
+
+    /**
+     * Rank documents by accumulating scores term-at-a-time over the full postings
+     * of every query term. Reference implementation for rankDocuments. Frequent
+     * terms are accumulated from their dense count blocks by the ScoreKernel,
+     * the others by scattering their postings.
+     *
+     * @param queryVector Query TF-IDF vector, over the term ids of the snapshot
+     * @param snapshot Segments of the index
      * @param topK Number of top results to return
-     * @return List of (docName, score) pairs sorted by score descending
+     * @return Top documents, by global document id, sorted by score descending
      */
-    public List<Map.Entry<String, Double>> rankDocuments(
-            Map<String, Double> queryVector,
-            Map<String, Map<String, Double>> documentVectors,
+    public List<TopKCollector.ScoredDocument> rankDocumentsExhaustive(
+            SparseVector queryVector,
+            IndexSnapshot snapshot,
             int topK) {
 
-        List<Map.Entry<String, Double>> scores = new ArrayList<>();
+        double queryMagnitude = queryVector.norm();
+        if (queryMagnitude == 0.0) {
+            return new ArrayList<>();
+        }
+
+        TopKCollector collector = new TopKCollector(topK);
+        List<IndexSnapshot.Segment> segments = snapshot.getSegments();
+        for (int s = 0; s < segments.size(); s++) {
+            IndexSnapshot.Segment segment = segments.get(s);
+            InvertedIndex index = segment.getIndex();
+
+            // Accumulate Σ multiplier × count over the postings of each query term, remembering
+            // which documents were touched so only those are visited afterwards
+            double[] accumulators = new double[index.getDocumentCount()];
+            int[] touched = new int[16];
+            int touchedCount = 0;
+            boolean dense = false;
+            for (int q = 0; q < queryVector.size(); q++) {
+                int termId = queryVector.getTermId(q);
+                int localId = segment.getLocalTermId(termId);
+                if (localId < 0) continue;
+                InvertedIndex.PostingList postings = index.getPostings(localId);
+                if (postings == null) continue;
+
+                double multiplier = queryVector.getWeight(q) / queryMagnitude * snapshot.getIdf(termId);
+                if (multiplier <= 0.0) continue;
+                float[] denseCounts = index.getDenseCounts(localId);
+                if (denseCounts != null) {
+                    kernel.accumulate(accumulators, denseCounts, 0, multiplier);
+                    dense = true;
+                    continue;
+                }
+                for (int i = 0; i < postings.size(); i++) {
+                    int docId = postings.getDocId(i);
+                    if (accumulators[docId] == 0.0) {
+                        if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                        touched[touchedCount++] = docId;
+                    }
+                    accumulators[docId] += multiplier * postings.getCount(i);
+                }
+            }
+
+            // Normalize by the document lengths and precomputed norms. A dense block
+            // touches most documents, so then every document is visited.
+            int visited = dense ? accumulators.length : touchedCount;
+            for (int i = 0; i < visited; i++) {
+                int docId = dense ? i : touched[i];
+                if (accumulators[docId] == 0.0) continue;
+                double documentNorm = index.getDocumentNorm(docId);
+                if (documentNorm == 0.0 || !segment.isLive(docId)) continue;
+                double scale = 1.0 / (index.getDocumentLength(docId) * documentNorm);
+                collector.collect(snapshot.getDocBase(s) + docId, accumulators[docId] * scale);
+            }
+        }
+        return collector.results();
+    }
+
+    /**
+     * Partition - Range [from, to) of the document ids of one segment.
+     */
+    private static class Partition {
+        final int segment;
+        final int from;
+        final int to;
 
-        // Compute similarity for each document
-        for (Map.Entry<String, Map<String, Double>> docEntry : documentVectors.entrySet()) {
-            String docName = docEntry.getKey();
-            Map<String, Double> docVector = docEntry.getValue();
-            
-            double similarity = compute(queryVector, docVector);
-            scores.add(new AbstractMap.SimpleEntry<>(docName, similarity));
+        Partition(int segment, int from, int to) {
+            this.segment = segment;
+            this.from = from;
+            this.to = to;
         }
+    }
+
+    /**
+     * Ranks partitions [lo, hi) of a query, splitting them in halves until one
+     * is left, and merges the top-K heaps of the halves.
+     */
+    private class PartitionTask extends RecursiveTask<TopKCollector> {
+        private static final long serialVersionUID = 1L;
+
+        private final SparseVector queryVector;
+        private final double queryMagnitude;
+        private final IndexSnapshot snapshot;
+        private final BooleanQuery filter;
+        private final List<Partition> partitions;
+        private final int lo;
+        private final int hi;
+        private final int topK;
 
-        // Sort by score descending
-        scores.sort((a, b) -> Double.compare(b.getValue(), a.getValue()));
+        PartitionTask(SparseVector queryVector, double queryMagnitude, IndexSnapshot snapshot, BooleanQuery filter,
+                      List<Partition> partitions, int lo, int hi, int topK) {
+            this.queryVector = queryVector;
+            this.queryMagnitude = queryMagnitude;
+            this.snapshot = snapshot;
+            this.filter = filter;
+            this.partitions = partitions;
+            this.lo = lo;
+            this.hi = hi;
+            this.topK = topK;
+        }
 
-        // Return top K results
-        return scores.subList(0, Math.min(topK, scores.size()));
+        @Override
+        protected TopKCollector compute() {
+            if (hi - lo == 1) {
+                Partition partition = partitions.get(lo);
+                TopKCollector collector = new TopKCollector(topK);
+                rankSegment(queryVector, queryMagnitude, snapshot, filter,
+                        snapshot.getSegments().get(partition.segment), snapshot.getDocBase(partition.segment),
+                        partition.from, partition.to, collector);
+                return collector;
+            }
+            int mid = (lo + hi) >>> 1;
+            PartitionTask left = new PartitionTask(queryVector, queryMagnitude, snapshot, filter, partitions,
+                    lo, mid, topK);
+            left.fork();
+            TopKCollector collector = new PartitionTask(queryVector, queryMagnitude, snapshot, filter, partitions,
+                    mid, hi, topK).compute();
+            collector.collectAll(left.join());
+            return collector;
+        }
     }
 }
@@ -0,0 +1,221 @@
+package com.myorg.search;
+
+import java.util.*;
+
+/**
+ * DocIdIterator - Documents of one segment matching part of a Boolean query, in
+ * increasing id order. BooleanQuery compiles its tree into these iterators: the
+ * leaves walk posting lists, and the inner nodes combine their children by
+ * moving them with advance() only as far as needed, so a conjunction of common
+ * terms jumps over whole postings blocks through the skip tables instead of
+ * reading every posting.
+ */
+public abstract class DocIdIterator {
+
+    /** docId() once the iterator is exhausted */
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    /** Current document, -1 before the first move, NO_MORE_DOCS once exhausted */
+    public abstract int docId();
+
+    /**
+     * Move to the first matching document at or after target, which must be
+     * greater than the current document.
+     *
+     * @return The new current document, or NO_MORE_DOCS
+     */
+    public abstract int advance(int target);
+
+    /** Move to the next matching document */
+    public int nextDoc() {
+        int current = docId();
+        return current == NO_MORE_DOCS ? NO_MORE_DOCS : advance(current + 1);
+    }
+
+    /** Upper bound of the number of documents matched, to intersect the rarest first */
+    public abstract long cost();
+
+    /**
+     * Empty - Matches no document, e.g. a term outside the segment.
+     */
+    public static class Empty extends DocIdIterator {
+        @Override
+        public int docId() {
+            return NO_MORE_DOCS;
+        }
+
+        @Override
+        public int advance(int target) {
+            return NO_MORE_DOCS;
+        }
+
+        @Override
+        public long cost() {
+            return 0;
+        }
+    }
+
+    /**
+     * Postings - Documents containing a term, from its posting list. advance()
+     * gallops over the skip table, then binary searches one block.
+     */
+    public static class Postings extends DocIdIterator {
+        private final InvertedIndex.PostingList postings;
+        private int index = -1;
+        private int docId = -1;
+
+        public Postings(InvertedIndex.PostingList postings) {
+            this.postings = postings;
+        }
+
+        @Override
+        public int docId() {
+            return docId;
+        }
+
+        /** Index of the current posting in the posting list */
+        public int index() {
+            return index;
+        }
+
+        @Override
+        public int advance(int target) {
+            int next = index + 1;
+            if (next >= postings.size()) {
+                index = postings.size();
+                docId = NO_MORE_DOCS;
+                return docId;
+            }
+            // In dense intersections the next posting usually reaches target: no need to skip
+            docId = postings.getDocId(next);
+            if (docId >= target) {
+                index = next;
+                return docId;
+            }
+            index = postings.advance(next, target);
+            docId = index < postings.size() ? postings.getDocId(index) : NO_MORE_DOCS;
+            return docId;
+        }
+
+        @Override
+        public long cost() {
+            return postings.size();
+        }
+    }
+
+    /**
+     * Conjunction - Documents matched by every child. The rarest child proposes
+     * a document and the others are advanced to it; whenever one overshoots,
+     * its document becomes the next candidate.
+     */
+    public static class Conjunction extends DocIdIterator {
+        private final DocIdIterator[] children;
+        private int docId = -1;
+
+        public Conjunction(List<? extends DocIdIterator> children) {
+            this.children = children.toArray(new DocIdIterator[0]);
+            Arrays.sort(this.children, Comparator.comparingLong(DocIdIterator::cost));
+        }
+
+        @Override
+        public int docId() {
+            return docId;
+        }
+
+        @Override
+        public int advance(int target) {
+            candidates:
+            while (true) {
+                for (DocIdIterator child : children) {
+                    int next = child.docId() < target ? child.advance(target) : child.docId();
+                    if (next == NO_MORE_DOCS) {
+                        docId = NO_MORE_DOCS;
+                        return docId;
+                    }
+                    if (next > target) {
+                        target = next;
+                        continue candidates;
+                    }
+                }
+                docId = target;
+                return docId;
+            }
+        }
+
+        @Override
+        public long cost() {
+            return children.length == 0 ? 0 : children[0].cost();
+        }
+    }
+
+    /**
+     * Disjunction - Documents matched by at least one child: the smallest
+     * current document of the children.
+     */
+    public static class Disjunction extends DocIdIterator {
+        private final DocIdIterator[] children;
+        private int docId = -1;
+
+        public Disjunction(List<? extends DocIdIterator> children) {
+            this.children = children.toArray(new DocIdIterator[0]);
+        }
+
+        @Override
+        public int docId() {
+            return docId;
+        }
+
+        @Override
+        public int advance(int target) {
+            int next = NO_MORE_DOCS;
+            for (DocIdIterator child : children) {
+                int childDoc = child.docId() < target ? child.advance(target) : child.docId();
+                next = Math.min(next, childDoc);
+            }
+            docId = next;
+            return docId;
+        }
+
+        @Override
+        public long cost() {
+            long cost = 0;
+            for (DocIdIterator child : children) cost += child.cost();
+            return cost;
+        }
+    }
+
+    /**
+     * Exclusion - Documents of one iterator that another does not match, e.g.
+     * a AND NOT b. The excluded iterator is only advanced to the candidates.
+     */
+    public static class Exclusion extends DocIdIterator {
+        private final DocIdIterator included;
+        private final DocIdIterator excluded;
+
+        public Exclusion(DocIdIterator included, DocIdIterator excluded) {
+            this.included = included;
+            this.excluded = excluded;
+        }
+
+        @Override
+        public int docId() {
+            return included.docId();
+        }
+
+        @Override
+        public int advance(int target) {
+            int doc = included.advance(target);
+            while (doc != NO_MORE_DOCS) {
+                int excludedDoc = excluded.docId() < doc ? excluded.advance(doc) : excluded.docId();
+                if (excludedDoc != doc) break;
+                doc = included.advance(doc + 1);
+            }
+            return doc;
+        }
+
+        @Override
+        public long cost() {
+            return included.cost();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.myorg.search;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.Arrays;
+
+/**
+ * DocumentStore - Per-document details needed to display search results, built
+ * at index time next to the index: file path, category, length in tokens and a
+ * preview of the text. The file is memory-mapped and indexed by document id, so
+ * hydrating a result is a table lookup instead of a corpus scan and file read.
+ *
+ * Layout (big-endian):
+ *   header    magic, version, documentCount
+ *   offsets   long offset of every document record
+ *   records   per document: path, category, int length, int previewBytes, preview
+ */
+public class DocumentStore {
+
+    static final int MAGIC = 0x41534544; // "ASED"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    /** Characters of text kept as the preview of a document */
+    public static final int PREVIEW_LENGTH = 500;
+
+    private final ByteBuffer buffer;
+    private final int documentCount;
+
+    private DocumentStore(ByteBuffer buffer, int documentCount) {
+        this.buffer = buffer;
+        this.documentCount = documentCount;
+    }
+
+    /**
+     * Document store belonging to a segment file: _0.seg → _0.docs
+     */
+    public static Path pathFor(Path indexPath) {
+        String name = indexPath.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return indexPath.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".docs");
+    }
+
+    /**
+     * Memory-map a document store written by DocumentStore.Writer.
+     */
+    public static DocumentStore open(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            InvertedIndex.checkMappable(path, channel);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("❌ Not a document store file!");
+        }
+        int version = buffer.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            throw new IOException("❌ Unsupported document store version " + version + ", please rebuild the index.");
+        }
+        return new DocumentStore(buffer, buffer.getInt(2 * Integer.BYTES));
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * Stored details of a document.
+     */
+    public StoredDocument get(int docId) {
+        if (docId < 0 || docId >= documentCount) {
+            throw new IndexOutOfBoundsException("Document id " + docId + " out of range: " + documentCount);
+        }
+        int offset = (int) buffer.getLong(HEADER_SIZE + docId * Long.BYTES);
+        ByteBuffer record = buffer.duplicate().position(offset);
+        String path = readString(record, record.getShort() & 0xFFFF);
+        String category = readString(record, record.getShort() & 0xFFFF);
+        int length = record.getInt();
+        String preview = readString(record, record.getInt());
+        return new StoredDocument(path, category, length, preview);
+    }
+
+    private static String readString(ByteBuffer buffer, int length) {
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * StoredDocument - Details of one document as stored at index time.
+     */
+    public static class StoredDocument {
+        private final String path;
+        private final String category;
+        private final int length;
+        private final String preview;
+
+        StoredDocument(String path, String category, int length, String preview) {
+            this.path = path;
+            this.category = category;
+            this.length = length;
+            this.preview = preview;
+        }
+
+        /** Absolute path of the document file */
+        public String getPath() {
+            return path;
+        }
+
+        /** Name of the folder holding the document */
+        public String getCategory() {
+            return category;
+        }
+
+        /** Number of tokens after preprocessing */
+        public int getLength() {
+            return length;
+        }
+
+        /** First PREVIEW_LENGTH characters of the text, followed by "..." if the text is longer */
+        public String getPreview() {
+            return preview;
+        }
+    }
+
+    /**
+     * Writer - Streams document records to a temporary file; finish() writes the
+     * offsets table and moves the complete store into place. Documents must be
+     * added in document id order.
+     */
+    public static class Writer implements Closeable {
+        private final Path path;
+        private final Path recordsPath;
+        private final DataOutputStream recordsOut;
+        private final ByteBuffer previewBytes = ByteBuffer.allocate(PREVIEW_LENGTH * 4 + 4);
+        private long[] offsets = new long[1024];
+        private int documentCount;
+        private long recordsSize;
+
+        public Writer(Path path) throws IOException {
+            this.path = path.toAbsolutePath();
+            Files.createDirectories(this.path.getParent());
+            this.recordsPath = Files.createTempFile(this.path.getParent(), "documents", ".tmp");
+            this.recordsOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(recordsPath), 1 << 16));
+        }
+
+        /**
+         * Add the next document. Only the first few KB of the file are read for the preview.
+         *
+         * @param file Document file
+         * @param length Number of tokens after preprocessing
+         */
+        public void add(File file, int length) throws IOException {
+            File parent = file.getParentFile();
+            addRecord(file.getAbsolutePath(), parent != null ? parent.getName() : "", length,
+                    readPreview(file.toPath()));
+        }
+
+        /** Copy a document from another store, e.g. when merging segments. */
+        public void add(StoredDocument document) throws IOException {
+            addRecord(document.path, document.category, document.length, document.preview);
+        }
+
+        private void addRecord(String path, String category, int length, String previewText) throws IOException {
+            byte[] pathBytes = encode(path);
+            byte[] categoryBytes = encode(category);
+            byte[] preview = previewText.getBytes(StandardCharsets.UTF_8);
+
+            if (documentCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, documentCount * 2);
+            }
+            offsets[documentCount++] = recordsSize;
+            recordsOut.writeShort(pathBytes.length);
+            recordsOut.write(pathBytes);
+            recordsOut.writeShort(categoryBytes.length);
+            recordsOut.write(categoryBytes);
+            recordsOut.writeInt(length);
+            recordsOut.writeInt(preview.length);
+            recordsOut.write(preview);
+            recordsSize += 2 * Short.BYTES + pathBytes.length + categoryBytes.length
+                    + 2 * Integer.BYTES + preview.length;
+        }
+
+        /** Bounded read of the start of a file: enough bytes for PREVIEW_LENGTH + 1 characters */
+        private String readPreview(Path file) throws IOException {
+            previewBytes.clear();
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                int read;
+                do {
+                    read = channel.read(previewBytes);
+                } while (read > 0 && previewBytes.hasRemaining());
+            }
+            previewBytes.flip();
+            // A multi-byte character may be cut at the end of the buffer; drop it
+            CharBuffer chars = StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.IGNORE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                    .decode(previewBytes);
+            String text = chars.toString();
+            return text.length() > PREVIEW_LENGTH ? text.substring(0, PREVIEW_LENGTH) + "..." : text;
+        }
+
+        public int getDocumentCount() {
+            return documentCount;
+        }
+
+        /** Write the offsets table and the records, then move the store into place. */
+        public void finish() throws IOException {
+            recordsOut.close();
+            long recordsOffset = HEADER_SIZE + (long) documentCount * Long.BYTES;
+            IndexWriter.checkFileSize(path, recordsOffset + recordsSize);
+            Path partial = Files.createTempFile(path.getParent(), "documents", ".partial");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(partial), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(documentCount);
+                for (int docId = 0; docId < documentCount; docId++) {
+                    out.writeLong(recordsOffset + offsets[docId]);
+                }
+                Files.copy(recordsPath, out);
+            } catch (IOException e) {
+                Files.deleteIfExists(partial);
+                throw e;
+            }
+            Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+
+        /** Delete the temporary records file. */
+        @Override
+        public void close() throws IOException {
+            recordsOut.close();
+            Files.deleteIfExists(recordsPath);
+        }
+
+        private static byte[] encode(String s) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0xFFFF) {
+                throw new IllegalArgumentException("String too long for document store: " + s.substring(0, 32) + "...");
+            }
+            return bytes;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package com.myorg.search;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * IndexManifest - The list of segments of an index and the corpus files indexed
+ * in them, stored as manifest.tsv in the index folder.
+ *
+ * Every corpus file is recorded with its modification time, size and content
+ * hash, so an update only reindexes files that actually changed, and with the
+ * segment and document id holding it. A document is live as long as a file
+ * entry points to it: reindexing or deleting a file just moves or drops its
+ * entry, and the old document is left behind as deleted until its segment is
+ * merged. Saving the manifest is the commit point of every change to the index.
+ *
+ * Format, one tab-separated record per line:
+ *   version   1
+ *   next      number of the next segment
+ *   segment   name, documentCount
+ *   file      relative path, modified, size, hash, segment, docId
+ */
+public class IndexManifest {
+
+    public static final String FILE_NAME = "manifest.tsv";
+    static final String SEGMENT_EXTENSION = ".seg";
+    private static final int VERSION = 1;
+
+    private final List<SegmentInfo> segments = new ArrayList<>();
+    private final Map<String, FileEntry> files = new LinkedHashMap<>();
+    // Segments being written, not saved: their files must survive deleteUnusedFiles
+    private final Set<String> pendingSegments = new HashSet<>();
+    private int nextSegment;
+    // Live documents per segment, kept instead of the file entries by loadLiveDocuments
+    private Map<String, boolean[]> liveBySegment;
+
+    /**
+     * Read the manifest of an index folder; an empty manifest if there is none yet.
+     */
+    public static IndexManifest load(Path indexDir) throws IOException {
+        return load(indexDir, false);
+    }
+
+    /**
+     * Read only what searching needs: the segments and which of their documents
+     * are live. File entries are just scanned for their segment and document id
+     * instead of being kept, which is most of the time and memory of opening a
+     * large index. The manifest read this way cannot be saved.
+     */
+    public static IndexManifest loadLiveDocuments(Path indexDir) throws IOException {
+        return load(indexDir, true);
+    }
+
+    private static IndexManifest load(Path indexDir, boolean liveOnly) throws IOException {
+        IndexManifest manifest = new IndexManifest();
+        Path path = indexDir.resolve(FILE_NAME);
+        if (liveOnly) {
+            manifest.liveBySegment = new HashMap<>();
+            if (Files.exists(path)) manifest.readLiveDocuments(path);
+            return manifest;
+        }
+        if (!Files.exists(path)) return manifest;
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                manifest.parseLine(line);
+            }
+        }
+        return manifest;
+    }
+
+    private void parseLine(String line) throws IOException {
+        String[] fields = line.split("\t");
+        switch (fields[0]) {
+            case "version":
+                if (Integer.parseInt(fields[1]) != VERSION) {
+                    throw new IOException("❌ Unsupported index manifest version " + fields[1]
+                            + ", please rebuild the index.");
+                }
+                break;
+            case "next":
+                nextSegment = Integer.parseInt(fields[1]);
+                break;
+            case "segment":
+                segments.add(new SegmentInfo(fields[1], Integer.parseInt(fields[2])));
+                if (liveBySegment != null) liveBySegment.put(fields[1], new boolean[Integer.parseInt(fields[2])]);
+                break;
+            case "file":
+                files.put(fields[1], new FileEntry(fields[1], Long.parseLong(fields[2]),
+                        Long.parseLong(fields[3]), Long.parseLong(fields[4]), fields[5],
+                        Integer.parseInt(fields[6])));
+                break;
+            default:
+                throw new IOException("❌ Corrupt index manifest line: " + line);
+        }
+    }
+
+    /**
+     * Scan the mapped manifest: file lines only get their last two fields, segment
+     * and document id, read as ASCII bytes; the other lines are parsed as usual.
+     */
+    private void readLiveDocuments(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int length = buffer.limit();
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && buffer.get(end) != '\n') end++;
+            if (end - start > 5 && buffer.get(start) == 'f' && buffer.get(start + 1) == 'i'
+                    && buffer.get(start + 2) == 'l' && buffer.get(start + 3) == 'e' && buffer.get(start + 4) == '\t') {
+                markLive(buffer, start, end);
+            } else if (end > start) {
+                byte[] line = new byte[end - start];
+                buffer.get(start, line);
+                parseLine(new String(line, StandardCharsets.UTF_8));
+            }
+            start = end + 1;
+        }
+    }
+
+    /** Mark live the document of the file line between start and end */
+    private void markLive(ByteBuffer buffer, int start, int end) throws IOException {
+        int docId = 0;
+        int tab = end - 1;
+        boolean digits = tab > start && buffer.get(tab) != '\t';
+        for (int scale = 1; tab > start && buffer.get(tab) != '\t'; tab--, scale *= 10) {
+            byte digit = buffer.get(tab);
+            digits &= digit >= '0' && digit <= '9';
+            docId += (digit - '0') * scale;
+        }
+        int segmentEnd = tab;
+        while (tab > start && buffer.get(tab - 1) != '\t') tab--;
+        if (!digits || tab <= start + 5) {
+            byte[] line = new byte[end - start];
+            buffer.get(start, line);
+            throw new IOException("❌ Corrupt index manifest line: " + new String(line, StandardCharsets.UTF_8));
+        }
+        byte[] name = new byte[segmentEnd - tab];
+        buffer.get(tab, name);
+        // Segments are saved before files, so the segment is known already
+        boolean[] live = liveBySegment.get(new String(name, StandardCharsets.UTF_8));
+        if (live != null && docId < live.length) {
+            live[docId] = true;
+        }
+    }
+
+    /**
+     * Write the manifest atomically: readers see either the old or the new index, never a mix.
+     */
+    public void save(Path indexDir) throws IOException {
+        if (liveBySegment != null) {
+            throw new IllegalStateException("Manifest loaded without its file entries cannot be saved");
+        }
+        Files.createDirectories(indexDir);
+        Path partial = indexDir.resolve(FILE_NAME + ".tmp");
+        try (BufferedWriter w = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+            w.write("version\t" + VERSION + "\n");
+            w.write("next\t" + nextSegment + "\n");
+            for (SegmentInfo segment : segments) {
+                w.write("segment\t" + segment.name + "\t" + segment.documentCount + "\n");
+            }
+            for (FileEntry file : files.values()) {
+                w.write("file\t" + file.path + "\t" + file.modified + "\t" + file.size + "\t" + file.hash
+                        + "\t" + file.segment + "\t" + file.docId + "\n");
+            }
+        }
+        Files.move(partial, indexDir.resolve(FILE_NAME),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /** Forget every segment and file, keeping the segment numbering so new names never reuse old files */
+    public void clear() {
+        segments.clear();
+        files.clear();
+    }
+
+    /** Reserve the name of a new segment; it is pending until added or abandoned */
+    public String newSegmentName() {
+        String name = "_" + nextSegment++;
+        pendingSegments.add(name);
+        return name;
+    }
+
+    public List<SegmentInfo> getSegments() {
+        return segments;
+    }
+
+    public void addSegment(String name, int documentCount) {
+        pendingSegments.remove(name);
+        segments.add(new SegmentInfo(name, documentCount));
+    }
+
+    /** Release the name of a segment that will not be added, so its files can be deleted */
+    public void abandonSegment(String name) {
+        pendingSegments.remove(name);
+    }
+
+    public boolean hasSegment(String name) {
+        for (SegmentInfo segment : segments) {
+            if (segment.name.equals(name)) return true;
+        }
+        return false;
+    }
+
+    /** Entries of the indexed corpus files, keyed by relative path */
+    public Map<String, FileEntry> getFiles() {
+        return files;
+    }
+
+    /**
+     * Which documents of a segment are still referenced by a file entry.
+     */
+    public boolean[] liveDocuments(SegmentInfo segment) {
+        if (liveBySegment != null) {
+            return liveBySegment.get(segment.name);
+        }
+        boolean[] live = new boolean[segment.documentCount];
+        for (FileEntry file : files.values()) {
+            if (file.segment.equals(segment.name)) {
+                live[file.docId] = true;
+            }
+        }
+        return live;
+    }
+
+    /** Drop segments without live documents */
+    public void removeEmptySegments() {
+        Set<String> used = new HashSet<>();
+        for (FileEntry file : files.values()) {
+            used.add(file.segment);
+        }
+        segments.removeIf(segment -> !used.contains(segment.name));
+    }
+
+    /** Segment index file of a segment; its document store is next to it */
+    public static Path segmentPath(Path indexDir, String name) {
+        return indexDir.resolve(name + SEGMENT_EXTENSION);
+    }
+
+    /**
+     * Delete files of the index folder that the manifest no longer refers to, such as
+     * segments merged away. Files of pending segments are kept, and while any segment
+     * is pending so are temporary files, which may belong to it. Files still open
+     * elsewhere are left for the next cleanup.
+     */
+    public void deleteUnusedFiles(Path indexDir) throws IOException {
+        Set<String> used = new HashSet<>();
+        used.add(FILE_NAME);
+        List<String> kept = new ArrayList<>(pendingSegments);
+        for (SegmentInfo segment : segments) kept.add(segment.name);
+        for (String name : kept) {
+            Path segmentPath = segmentPath(indexDir, name);
+            used.add(segmentPath.getFileName().toString());
+            used.add(DocumentStore.pathFor(segmentPath).getFileName().toString());
+            used.add(PositionIndex.pathFor(segmentPath).getFileName().toString());
+            used.add(SegmentStatistics.pathFor(segmentPath).getFileName().toString());
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(indexDir)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                if (used.contains(name) || Files.isDirectory(entry)) continue;
+                if (!pendingSegments.isEmpty() && !name.startsWith("_")) continue;
+                try {
+                    Files.deleteIfExists(entry);
+                } catch (IOException e) {
+                    System.out.println("⚠️ Could not delete unused index file: " + entry.getFileName());
+                }
+            }
+        }
+    }
+
+    /**
+     * SegmentInfo - Name and document count (deleted documents included) of a segment.
+     */
+    public static class SegmentInfo {
+        private final String name;
+        private final int documentCount;
+
+        SegmentInfo(String name, int documentCount) {
+            this.name = name;
+            this.documentCount = documentCount;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getDocumentCount() {
+            return documentCount;
+        }
+    }
+
+    /**
+     * FileEntry - State of an indexed corpus file and where its document lives.
+     */
+    public static class FileEntry {
+        private final String path;
+        private final long modified;
+        private final long size;
+        private final long hash;
+        private final String segment;
+        private final int docId;
+
+        public FileEntry(String path, long modified, long size, long hash, String segment, int docId) {
+            this.path = path;
+            this.modified = modified;
+            this.size = size;
+            this.hash = hash;
+            this.segment = segment;
+            this.docId = docId;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public long getModified() {
+            return modified;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getHash() {
+            return hash;
+        }
+
+        public String getSegment() {
+            return segment;
+        }
+
+        public int getDocId() {
+            return docId;
+        }
+    }
+}
@@ -0,0 +1,387 @@
+package com.myorg.search;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IndexSnapshot - A consistent view over the segments of an index, as listed by
+ * one version of the manifest.
+ *
+ * Documents get global ids: the id within their segment plus the number of
+ * documents in the segments before it. Terms get global ids from a dictionary
+ * merged over all segments, with document frequencies summed over the segments,
+ * so the IDF is the same whichever segment a document lives in. Deleted documents
+ * still count in the statistics until their segment is merged, as their postings
+ * are only dropped then.
+ *
+ * A snapshot is reference counted so it can be replaced while it is searched:
+ * whoever publishes it holds one reference and every search acquires its own.
+ * Once retired and no longer searched, the caches of its segments that the next
+ * snapshot does not use are released.
+ */
+public class IndexSnapshot {
+
+    private static final int OPEN_ATTEMPTS = 10;
+
+    private final List<Segment> segments;
+    private final int[] docBases;
+    private final int documentCount;
+    private final int liveDocumentCount;
+    private final double averageDocumentLength;
+    private final TermDictionary dictionary;
+    private final int[] documentFrequencies;
+    private final FileTime manifestModified;
+    // One reference for the publisher, one per search in progress
+    private final AtomicInteger references = new AtomicInteger(1);
+    private volatile IndexSnapshot successor;
+    private volatile boolean retired;
+
+    private IndexSnapshot(List<Segment> segments, FileTime manifestModified) {
+        this.segments = segments;
+        this.manifestModified = manifestModified;
+        this.docBases = new int[segments.size()];
+        int base = 0;
+        int live = 0;
+        long totalLength = 0;
+        for (int s = 0; s < segments.size(); s++) {
+            docBases[s] = base;
+            base += segments.get(s).index.getDocumentCount();
+            live += segments.get(s).getLiveDocumentCount();
+            totalLength += segments.get(s).index.getTotalLength();
+        }
+        this.documentCount = base;
+        this.liveDocumentCount = live;
+        this.averageDocumentLength = base == 0 ? 0.0 : (double) totalLength / base;
+
+        if (segments.size() == 1) {
+            // The dictionary of a single segment is the global one: share it rather than
+            // hashing every term again, local and global ids are the same
+            InvertedIndex index = segments.get(0).index;
+            this.dictionary = index.getDictionary();
+            this.documentFrequencies = new int[dictionary.size()];
+            for (int termId = 0; termId < documentFrequencies.length; termId++) {
+                documentFrequencies[termId] = index.getDocumentFrequency(termId);
+            }
+            return;
+        }
+
+        // Global dictionary: first-occurrence ids over the segments in order
+        this.dictionary = new TermDictionary();
+        int[] frequencies = new int[1024];
+        for (Segment segment : segments) {
+            InvertedIndex index = segment.index;
+            for (int localId = 0; localId < index.getTermCount(); localId++) {
+                int termId = dictionary.getOrAdd(index.getTerm(localId));
+                if (termId >= frequencies.length) frequencies = Arrays.copyOf(frequencies, frequencies.length * 2);
+                frequencies[termId] += index.getDocumentFrequency(localId);
+            }
+        }
+        this.documentFrequencies = Arrays.copyOf(frequencies, dictionary.size());
+        for (Segment segment : segments) {
+            InvertedIndex index = segment.index;
+            segment.localTermIds = new int[dictionary.size()];
+            Arrays.fill(segment.localTermIds, -1);
+            for (int localId = 0; localId < index.getTermCount(); localId++) {
+                segment.localTermIds[dictionary.getId(index.getTerm(localId))] = localId;
+            }
+        }
+    }
+
+    /**
+     * Open the segments listed in the manifest of an index folder. Once open, the
+     * segments are memory-mapped and stay readable even if a merge deletes their files.
+     */
+    public static IndexSnapshot open(Path indexDir) throws IOException {
+        return open(indexDir, null);
+    }
+
+    /**
+     * Open the segments listed in the manifest of an index folder, sharing the
+     * segments of a previous snapshot whose files did not change instead of
+     * opening them again, with the caches built for them.
+     *
+     * @param previous Snapshot of the same folder, or null
+     */
+    public static IndexSnapshot open(Path indexDir, IndexSnapshot previous) throws IOException {
+        Path manifestPath = indexDir.resolve(IndexManifest.FILE_NAME);
+        if (!Files.exists(manifestPath)) {
+            throw new IOException("❌ No search index found in " + indexDir + ", please build the index.");
+        }
+        // A commit between reading the manifest and opening its segments may delete
+        // some of them; the manifest it saved lists their replacement, so read it again
+        for (int attempt = 1; ; attempt++) {
+            // Read before the manifest: a commit in between only causes one more reload
+            FileTime manifestModified = Files.getLastModifiedTime(manifestPath);
+            IndexManifest manifest = IndexManifest.loadLiveDocuments(indexDir);
+            try {
+                List<Segment> segments = new ArrayList<>();
+                for (IndexManifest.SegmentInfo info : manifest.getSegments()) {
+                    Path segmentPath = IndexManifest.segmentPath(indexDir, info.getName());
+                    BasicFileAttributes attributes = Files.readAttributes(segmentPath, BasicFileAttributes.class);
+                    Segment shared = previous != null ? previous.findSegment(info.getName(), attributes) : null;
+                    InvertedIndex index = shared != null ? shared.index : InvertedIndex.open(segmentPath);
+                    DocumentStore store = shared != null ? shared.store
+                            : DocumentStore.open(DocumentStore.pathFor(segmentPath));
+                    segments.add(new Segment(info.getName(), attributes, index, store, manifest.liveDocuments(info)));
+                }
+                return new IndexSnapshot(segments, manifestModified);
+            } catch (NoSuchFileException e) {
+                if (attempt == OPEN_ATTEMPTS) throw e;
+            }
+        }
+    }
+
+    /**
+     * Snapshot over a single segment without deletions or document store.
+     */
+    public static IndexSnapshot of(InvertedIndex index) {
+        return new IndexSnapshot(List.of(new Segment("_0", null, index, null, null)), null);
+    }
+
+    /**
+     * Whether the manifest of the index folder was saved again since this snapshot
+     * was opened, i.e. whether opening the folder now would give another snapshot.
+     */
+    public boolean isStale(Path indexDir) throws IOException {
+        Path manifestPath = indexDir.resolve(IndexManifest.FILE_NAME);
+        return manifestModified != null && Files.exists(manifestPath)
+                && !manifestModified.equals(Files.getLastModifiedTime(manifestPath));
+    }
+
+    /** Open segment of this snapshot with the same name and unchanged file, or null */
+    private Segment findSegment(String name, BasicFileAttributes attributes) {
+        for (Segment segment : segments) {
+            if (segment.name.equals(name) && segment.fileSize == attributes.size()
+                    && attributes.lastModifiedTime().equals(segment.fileModified)) {
+                return segment;
+            }
+        }
+        return null;
+    }
+
+    /** Whether one of the segments of this snapshot searches the index */
+    private boolean shares(InvertedIndex index) {
+        for (Segment segment : segments) {
+            if (segment.index == index) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Number of segments this snapshot shares with another one.
+     */
+    public int countSharedSegments(IndexSnapshot other) {
+        int count = 0;
+        for (Segment segment : segments) {
+            if (other.shares(segment.index)) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Take a reference for a search, to be given back with release().
+     *
+     * @return false if the snapshot was already released, then a newer one must be searched
+     */
+    public boolean acquire() {
+        while (true) {
+            int count = references.get();
+            if (count == 0) return false;
+            if (references.compareAndSet(count, count + 1)) return true;
+        }
+    }
+
+    /**
+     * Give back a reference. The last one releases the caches of the segments
+     * that the successor of the snapshot does not share.
+     */
+    public void release() {
+        if (references.decrementAndGet() == 0) {
+            IndexSnapshot next = successor;
+            for (Segment segment : segments) {
+                if (next == null || !next.shares(segment.index)) {
+                    segment.index.releaseCaches();
+                }
+            }
+        }
+    }
+
+    /**
+     * Give back the publisher's reference once the snapshot is replaced: it is
+     * released as soon as the searches still using it are done.
+     *
+     * @param successor Snapshot replacing this one, or null if there is none
+     */
+    public void retire(IndexSnapshot successor) {
+        this.successor = successor;
+        this.retired = true;
+        release();
+    }
+
+    /** Whether the snapshot was replaced; searches in progress may still use it */
+    public boolean isRetired() {
+        return retired;
+    }
+
+    public List<Segment> getSegments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    /** Global id of the first document of a segment */
+    public int getDocBase(int segment) {
+        return docBases[segment];
+    }
+
+    /** Index of the segment holding a global document id */
+    public int segmentOf(int docId) {
+        int s = Arrays.binarySearch(docBases, docId);
+        if (s < 0) {
+            s = -s - 2;
+        }
+        // Skip empty segments sharing the same base
+        while (s + 1 < docBases.length && docBases[s + 1] == docId) s++;
+        return s;
+    }
+
+    /**
+     * Global id of the term, or -1 if it is not in the index.
+     */
+    public int getTermId(String term) {
+        return dictionary.getId(term);
+    }
+
+    public String getTerm(int termId) {
+        return dictionary.getTerm(termId);
+    }
+
+    public int getTermCount() {
+        return dictionary.size();
+    }
+
+    /** Number of documents containing the term, over all segments */
+    public int getDocumentFrequency(int termId) {
+        return documentFrequencies[termId];
+    }
+
+    /** IDF of the term over the whole index */
+    public double getIdf(int termId) {
+        return TfIdfBuilder.inverseDocumentFrequency(documentCount, documentFrequencies[termId]);
+    }
+
+    /** Number of documents, deleted ones included: the N of the IDF */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /** Average length of the documents, deleted ones included like in the IDF: the avgdl of BM25 */
+    public double getAverageDocumentLength() {
+        return averageDocumentLength;
+    }
+
+    public int getLiveDocumentCount() {
+        return liveDocumentCount;
+    }
+
+    public boolean isLive(int docId) {
+        int s = segmentOf(docId);
+        return segments.get(s).isLive(docId - docBases[s]);
+    }
+
+    public String getDocumentPath(int docId) {
+        int s = segmentOf(docId);
+        return segments.get(s).index.getDocumentPath(docId - docBases[s]);
+    }
+
+    public String getDocumentSource(int docId) {
+        int s = segmentOf(docId);
+        return segments.get(s).index.getDocumentSource(docId - docBases[s]);
+    }
+
+    public DocumentStore.StoredDocument getStoredDocument(int docId) {
+        int s = segmentOf(docId);
+        return segments.get(s).store.get(docId - docBases[s]);
+    }
+
+    /** Whether every segment has positions, so phrases are matched exactly everywhere */
+    public boolean hasPositions() {
+        for (Segment segment : segments) {
+            if (!segment.index.hasPositions()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Total number of postings over all segments.
+     */
+    public long getPostingCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.index.getPostingCount();
+        }
+        return count;
+    }
+
+    /**
+     * Segment - One segment of a snapshot: its index, document store and live documents.
+     */
+    public static class Segment {
+        private final String name;
+        private final long fileSize;
+        private final FileTime fileModified;
+        private final InvertedIndex index;
+        private final DocumentStore store;
+        private final boolean[] live;
+        private final int liveDocumentCount;
+        // Global term id → id within the segment; null when they are the same
+        private int[] localTermIds;
+
+        Segment(String name, BasicFileAttributes attributes, InvertedIndex index, DocumentStore store, boolean[] live) {
+            this.name = name;
+            this.fileSize = attributes != null ? attributes.size() : -1;
+            this.fileModified = attributes != null ? attributes.lastModifiedTime() : null;
+            this.index = index;
+            this.store = store;
+            this.live = live;
+            int count = index.getDocumentCount();
+            if (live != null) {
+                count = 0;
+                for (boolean l : live) if (l) count++;
+            }
+            this.liveDocumentCount = count;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public InvertedIndex getIndex() {
+            return index;
+        }
+
+        public DocumentStore getStore() {
+            return store;
+        }
+
+        /** Whether a document of this segment (by id within the segment) is still live */
+        public boolean isLive(int docId) {
+            return live == null || live[docId];
+        }
+
+        public boolean hasDeletions() {
+            return liveDocumentCount < index.getDocumentCount();
+        }
+
+        public int getLiveDocumentCount() {
+            return liveDocumentCount;
+        }
+
+        /** Id of a global term within this segment, or -1 if the segment does not contain it */
+        public int getLocalTermId(int termId) {
+            return localTermIds == null ? termId : localTermIds[termId];
+        }
+    }
+}
@@ -0,0 +1,733 @@
+package com.myorg.search;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * IndexWriter - Streams documents into one index segment, in the binary format read by InvertedIndex.
+ *
+ * Documents are added one at a time as token lists; tokens are mapped to term
+ * ids and folded into term counts. Postings are buffered in memory per term id
+ * and spilled to run files sorted by term id whenever the buffer exceeds the
+ * memory budget; finish() merges the runs, computes document norms and max
+ * scores, and writes the segment. Memory use is bounded by the budget plus the
+ * term dictionary and a few values per document, independent of the corpus size.
+ *
+ * Layout (big-endian):
+ *   header      magic, version, documentCount, termCount,
+ *               docTableOffset, dictionaryOffset, postingsOffset
+ *   doc table   per document: path relative to the corpus, source, length, norm
+ *   dictionary  per term, in term id order: term, document frequency, max score,
+ *               max count, max count / document length, postings offset
+ *   postings    per term, in blocks of BLOCK_SIZE postings:
+ *                 skip table  if more than one block: per block, int last doc id, int block offset
+ *                 blocks      per block: VByte doc id gaps, then VByte counts
+ *
+ * Doc id gaps are taken from the last doc id of the previous block (0 for the
+ * first block), so every block decodes on its own; the skip table lets
+ * readers jump to the block holding a doc id without decoding the ones before.
+ * Common terms take 1-2 bytes per posting instead of 8.
+ *
+ * Postings hold raw term counts; TF-IDF weights are computed at query time with
+ * the IDF of the whole index, so segments written at different times stay
+ * comparable. The norm of a document is the length of its TF-IDF vector under
+ * the statistics known when the segment is written: this segment plus the
+ * CollectionStatistics of the other segments. Terms whose IDF is not positive
+ * add nothing to the norm. The max score of a term is the largest
+ * term frequency / document norm over its postings: multiplied by the IDF, the
+ * upper bound used for dynamic pruning at query time. The max count and max
+ * count / length bound the BM25 term frequency part the same way, see Bm25.
+ *
+ * Optionally, the position of every token is recorded too: positions go through
+ * the runs with their postings and are written to a PositionIndex file of their
+ * own, so the segment and the queries that do not need positions are unchanged.
+ * The document count, total length and document frequencies are also written
+ * to a SegmentStatistics file, read when later segments of the index are written.
+ */
+public class IndexWriter implements Closeable {
+
+    static final int MAGIC = 0x41534549; // "ASEI"
+    static final int VERSION = 8;
+    static final int HEADER_SIZE = 4 * Integer.BYTES + 3 * Long.BYTES;
+    /** Postings per block of a posting list */
+    static final int BLOCK_SIZE = 128;
+    /** Bytes of a skip table entry: last doc id and offset of a block */
+    static final int SKIP_ENTRY_BYTES = 2 * Integer.BYTES;
+    /** Longest term, path or source in UTF-8 bytes: their length is written as an unsigned short */
+    static final int MAX_STRING_BYTES = 0xFFFF;
+    /**
+     * Largest segment, positions or document store file: readers memory-map each
+     * file as one buffer addressed by int, so a larger file could not be opened.
+     */
+    public static final long MAX_FILE_BYTES = Integer.MAX_VALUE;
+
+    // Rough heap cost of a term's postings buffer and of one buffered posting
+    private static final int TERM_OVERHEAD_BYTES = 64;
+    private static final int POSTING_BYTES = 2 * Integer.BYTES;
+
+    private final Path path;
+    private final long memoryBudget;
+    private final CollectionStatistics statistics;
+    private final boolean recordPositions;
+    private final Path tempDir;
+    private final Path docNamesPath;
+    private final DataOutputStream docNamesOut;
+    private final List<Path> runs = new ArrayList<>();
+    private final TermDictionary dictionary = new TermDictionary(1024);
+
+    private PostingsBuffer[] buffers = new PostingsBuffer[1024];
+    private int bufferedTerms;
+    private long bufferedBytes;
+    private int[] documentLengths = new int[1024];
+    private int documentCount;
+    private long docTableSize;
+
+    /**
+     * @param path Where the finished index is written
+     * @param memoryBudget Approximate number of bytes of postings kept in memory before spilling a run
+     */
+    public IndexWriter(Path path, long memoryBudget) throws IOException {
+        this(path, memoryBudget, CollectionStatistics.EMPTY);
+    }
+
+    /**
+     * @param path Where the finished segment is written
+     * @param memoryBudget Approximate number of bytes of postings kept in memory before spilling a run
+     * @param statistics Statistics of the other segments of the index, used for the IDF of the norms
+     */
+    public IndexWriter(Path path, long memoryBudget, CollectionStatistics statistics) throws IOException {
+        this(path, memoryBudget, statistics, false);
+    }
+
+    /**
+     * @param path Where the finished segment is written
+     * @param memoryBudget Approximate number of bytes of postings kept in memory before spilling a run
+     * @param statistics Statistics of the other segments of the index, used for the IDF of the norms
+     * @param recordPositions Also write the positions of the tokens, to PositionIndex.pathFor(path)
+     */
+    public IndexWriter(Path path, long memoryBudget, CollectionStatistics statistics,
+                       boolean recordPositions) throws IOException {
+        this.path = path.toAbsolutePath();
+        this.memoryBudget = memoryBudget;
+        this.statistics = statistics;
+        this.recordPositions = recordPositions;
+        Files.createDirectories(this.path.getParent());
+        this.tempDir = Files.createTempDirectory(this.path.getParent(), "index-build");
+        this.docNamesPath = tempDir.resolve("docs.tmp");
+        this.docNamesOut = openOutput(docNamesPath);
+    }
+
+    /**
+     * Add a document and return its id. Ids are assigned in insertion order.
+     * Tokens longer than MAX_STRING_BYTES cannot be written to the dictionary:
+     * they are left out with a warning, like the stop words the preprocessor drops.
+     *
+     * @param path Path of the document relative to the corpus; identifies the document
+     * @param source Corpus source the document comes from (Hespres, Medi1TV, ...)
+     * @param tokens Preprocessed tokens of the document
+     */
+    public int addDocument(String path, String source, List<String> tokens) throws IOException {
+        tokens = withoutOversizeTokens(path, tokens);
+        int docId = addDocumentEntry(path, source, tokens.size());
+
+        if (recordPositions) {
+            bufferPositionalPostings(docId, tokens);
+        } else {
+            // Term counts: sort the token ids and count runs of equal ids
+            int[] termIds = new int[tokens.size()];
+            for (int i = 0; i < termIds.length; i++) {
+                termIds[i] = dictionary.getOrAdd(tokens.get(i));
+            }
+            Arrays.sort(termIds);
+            for (int i = 0; i < termIds.length; ) {
+                int termId = termIds[i];
+                int count = 0;
+                while (i < termIds.length && termIds[i] == termId) {
+                    count++;
+                    i++;
+                }
+                bufferPosting(termId, docId, count, null, 0);
+            }
+        }
+
+        if (bufferedBytes >= memoryBudget) {
+            spill();
+        }
+        return docId;
+    }
+
+    /** The tokens, without the ones too long for the dictionary. */
+    private static List<String> withoutOversizeTokens(String path, List<String> tokens) {
+        List<String> kept = null;
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            // A UTF-8 char takes at most 3 bytes: only long tokens need encoding
+            boolean oversize = token.length() > MAX_STRING_BYTES / 3
+                    && token.getBytes(StandardCharsets.UTF_8).length > MAX_STRING_BYTES;
+            if (oversize && kept == null) {
+                kept = new ArrayList<>(tokens.subList(0, i));
+            }
+            if (oversize) {
+                System.out.println("⚠️ Skipped a token of " + token.length() + " chars in " + path);
+            } else if (kept != null) {
+                kept.add(token);
+            }
+        }
+        return kept == null ? tokens : kept;
+    }
+
+    /**
+     * Postings of a document with the positions of its terms: sort (term id, position)
+     * pairs packed in longs, so each run of equal term ids holds the positions in order.
+     */
+    private void bufferPositionalPostings(int docId, List<String> tokens) {
+        long[] keys = new long[tokens.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = (long) dictionary.getOrAdd(tokens.get(i)) << 32 | i;
+        }
+        Arrays.sort(keys);
+        int[] positions = new int[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            positions[i] = (int) keys[i];
+        }
+        for (int i = 0; i < keys.length; ) {
+            int termId = (int) (keys[i] >>> 32);
+            int from = i;
+            while (i < keys.length && (int) (keys[i] >>> 32) == termId) {
+                i++;
+            }
+            bufferPosting(termId, docId, i - from, positions, from);
+        }
+    }
+
+    /**
+     * Add a document to the doc table without postings and return its id; its
+     * postings are added with addPosting. Used to copy documents when merging segments.
+     *
+     * @param length Number of tokens of the document
+     */
+    public int addDocumentEntry(String path, String source, int length) throws IOException {
+        int docId = documentCount++;
+        if (docId == documentLengths.length) {
+            documentLengths = Arrays.copyOf(documentLengths, docId * 2);
+        }
+        documentLengths[docId] = length;
+
+        byte[] pathBytes = encode(path);
+        byte[] sourceBytes = encode(source);
+        writeBytes(docNamesOut, pathBytes);
+        writeBytes(docNamesOut, sourceBytes);
+        docTableSize += 2 * Short.BYTES + pathBytes.length + sourceBytes.length + Integer.BYTES + Double.BYTES;
+        return docId;
+    }
+
+    /**
+     * Add one posting of a document added with addDocumentEntry. The postings of
+     * each term must be added in increasing document id order.
+     */
+    public void addPosting(String term, int docId, int count) throws IOException {
+        addPosting(term, docId, count, null);
+    }
+
+    /**
+     * Add one posting with the positions of the term in the document.
+     *
+     * @param positions At least count positions, ascending; ignored unless positions are recorded
+     */
+    public void addPosting(String term, int docId, int count, int[] positions) throws IOException {
+        if (recordPositions && positions == null) {
+            throw new IllegalArgumentException("Positions are recorded, but none were given for " + term);
+        }
+        bufferPosting(dictionary.getOrAdd(term), docId, count, positions, 0);
+        if (bufferedBytes >= memoryBudget) {
+            spill();
+        }
+    }
+
+    /** Whether the positions of the terms are recorded */
+    public boolean recordsPositions() {
+        return recordPositions;
+    }
+
+    /**
+     * @param positions Positions of the posting from positions[from], or null when not recorded
+     */
+    private void bufferPosting(int termId, int docId, int count, int[] positions, int from) {
+        if (termId >= buffers.length) {
+            buffers = Arrays.copyOf(buffers, Math.max(termId + 1, buffers.length * 2));
+        }
+        PostingsBuffer postings = buffers[termId];
+        if (postings == null) {
+            postings = new PostingsBuffer();
+            buffers[termId] = postings;
+            bufferedTerms++;
+            bufferedBytes += TERM_OVERHEAD_BYTES;
+        }
+        postings.add(docId, count);
+        bufferedBytes += POSTING_BYTES;
+        if (recordPositions) {
+            postings.addPositions(positions, from, count);
+            bufferedBytes += (long) count * Integer.BYTES;
+        }
+    }
+
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /** Write the buffered postings as a run file sorted by term id. */
+    private void spill() throws IOException {
+        if (bufferedTerms == 0) return;
+
+        Path run = tempDir.resolve("run-" + runs.size() + ".tmp");
+        try (DataOutputStream out = openOutput(run)) {
+            out.writeInt(bufferedTerms);
+            for (int termId = 0; termId < buffers.length; termId++) {
+                PostingsBuffer postings = buffers[termId];
+                if (postings == null) continue;
+                out.writeInt(termId);
+                out.writeInt(postings.size);
+                for (int i = 0; i < postings.size; i++) {
+                    out.writeInt(postings.docIds[i]);
+                    out.writeInt(postings.counts[i]);
+                }
+                for (int i = 0; i < postings.positionCount; i++) {
+                    out.writeInt(postings.positions[i]);
+                }
+            }
+        }
+        runs.add(run);
+        System.out.println("   💾 Spilled run " + runs.size() + " (" + bufferedTerms + " terms, "
+                + (bufferedBytes >> 20) + " MB)");
+
+        buffers = new PostingsBuffer[buffers.length];
+        bufferedTerms = 0;
+        bufferedBytes = 0;
+    }
+
+    /**
+     * Merge all runs and write the final segment. The segment is written to a
+     * temporary file first and moved into place once complete.
+     */
+    public void finish() throws IOException {
+        spill();
+        docNamesOut.close();
+
+        int N = documentCount;
+        int collectionSize = statistics.getDocumentCount() + N;
+        double[] sumOfSquares = new double[N];
+        Path dictionaryPath = tempDir.resolve("dictionary.tmp");
+        Path postingsPath = tempDir.resolve("postings.tmp");
+        Path encodedPath = tempDir.resolve("encoded.tmp");
+        Path positionsPath = tempDir.resolve("positions.tmp");
+        int termCount = 0;
+        long dictionarySize = 0;
+        long[] positionOffsets = new long[recordPositions ? dictionary.size() : 0];
+        int[] documentFrequencies = new int[dictionary.size()];
+        long postingsSize;
+        long positionsSize;
+
+        // K-way merge of the runs by term id; runs are chronological, so the postings
+        // of a term are concatenated in run order. Every term id occurs in some run.
+        List<RunReader> readers = new ArrayList<>();
+        PriorityQueue<RunReader> queue = new PriorityQueue<>(
+                Comparator.comparingInt((RunReader r) -> r.termId).thenComparingInt(r -> r.runIndex));
+        try (DataOutputStream dictionaryOut = openOutput(dictionaryPath);
+             DataOutputStream postingsOut = openOutput(postingsPath);
+             DataOutputStream encodedOut = openOutput(encodedPath);
+             DataOutputStream positionsOut = recordPositions ? openOutput(positionsPath) : null) {
+            for (int i = 0; i < runs.size(); i++) {
+                RunReader reader = new RunReader(runs.get(i), i, recordPositions);
+                readers.add(reader);
+                if (reader.next()) queue.add(reader);
+            }
+
+            PostingsBuffer merged = new PostingsBuffer();
+            ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+            long offset = 0;
+            long positionsOffset = 0;
+            while (!queue.isEmpty()) {
+                int termId = queue.peek().termId;
+                merged.size = 0;
+                merged.positionCount = 0;
+                while (!queue.isEmpty() && queue.peek().termId == termId) {
+                    RunReader reader = queue.poll();
+                    reader.readPostings(merged);
+                    if (reader.next()) queue.add(reader);
+                }
+
+                // Only terms with a positive IDF over the whole index add to the norms
+                String term = dictionary.getTerm(termId);
+                int documentFrequency = merged.size;
+                documentFrequencies[termId] = documentFrequency;
+                double idf = TfIdfBuilder.inverseDocumentFrequency(collectionSize,
+                        statistics.getDocumentFrequency(term) + documentFrequency);
+                if (idf > 0.0) {
+                    for (int i = 0; i < documentFrequency; i++) {
+                        int docId = merged.docIds[i];
+                        double weight = TfIdfBuilder.termFrequency(merged.counts[i], documentLengths[docId]) * idf;
+                        sumOfSquares[docId] += weight * weight;
+                    }
+                }
+
+                byte[] termBytes = encode(term);
+                writeBytes(dictionaryOut, termBytes);
+                dictionaryOut.writeInt(documentFrequency);
+                dictionaryOut.writeLong(offset);
+                dictionarySize += Short.BYTES + termBytes.length + 2 * Integer.BYTES + 2 * Double.BYTES + Long.BYTES;
+                termCount++;
+
+                // Raw postings for the max scores pass, encoded ones for the segment
+                for (int i = 0; i < documentFrequency; i++) postingsOut.writeInt(merged.docIds[i]);
+                for (int i = 0; i < documentFrequency; i++) postingsOut.writeInt(merged.counts[i]);
+                encoded.reset();
+                encodePostings(merged, encoded);
+                encoded.writeTo(encodedOut);
+                offset += encoded.size();
+
+                if (recordPositions) {
+                    positionOffsets[termId] = positionsOffset;
+                    encoded.reset();
+                    encodePositions(merged, encoded);
+                    encoded.writeTo(positionsOut);
+                    positionsOffset += encoded.size();
+                }
+            }
+            postingsSize = offset;
+            positionsSize = positionsOffset;
+        } finally {
+            for (RunReader reader : readers) reader.close();
+        }
+
+        long docTableOffset = HEADER_SIZE;
+        long dictionaryOffset = docTableOffset + docTableSize;
+        long postingsOffset = dictionaryOffset + dictionarySize;
+        checkFileSize(path, postingsOffset + postingsSize);
+        if (recordPositions) {
+            checkFileSize(PositionIndex.pathFor(path),
+                    PositionIndex.HEADER_SIZE + (long) termCount * Long.BYTES + positionsSize);
+        }
+
+        Path partial = tempDir.resolve("index.tmp");
+        try (DataOutputStream out = openOutput(partial);
+             DataInputStream docNamesIn = openInput(docNamesPath)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(N);
+            out.writeInt(termCount);
+            out.writeLong(docTableOffset);
+            out.writeLong(dictionaryOffset);
+            out.writeLong(postingsOffset);
+
+            // Turn the sums of squares into norms in place
+            double[] norms = sumOfSquares;
+            for (int docId = 0; docId < N; docId++) {
+                norms[docId] = Math.sqrt(norms[docId]);
+                for (int field = 0; field < 2; field++) {
+                    byte[] bytes = new byte[docNamesIn.readUnsignedShort()];
+                    docNamesIn.readFully(bytes);
+                    writeBytes(out, bytes);
+                }
+                out.writeInt(documentLengths[docId]);
+                out.writeDouble(norms[docId]);
+            }
+            writeDictionary(out, dictionaryPath, postingsPath, termCount, norms);
+            Files.copy(encodedPath, out);
+        }
+        // Positions and statistics first: once the segment is in place, they are too
+        if (recordPositions) {
+            writePositions(positionsPath, positionOffsets, termCount);
+        }
+        writeStatistics(documentFrequencies);
+        Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Refuse to write a file that could not be memory-mapped, before anything is written.
+     */
+    static void checkFileSize(Path path, long size) throws IOException {
+        if (size > MAX_FILE_BYTES) {
+            throw new IOException("❌ " + path.getFileName() + " would be " + size + " bytes, over the "
+                    + MAX_FILE_BYTES + " bytes a segment file can have. Index the corpus in several segments.");
+        }
+    }
+
+    /**
+     * Write the PositionIndex file: header, offset of every term, then the
+     * positions encoded while merging.
+     */
+    private void writePositions(Path positionsPath, long[] positionOffsets, int termCount) throws IOException {
+        Path partial = tempDir.resolve("positions-index.tmp");
+        long dataOffset = PositionIndex.HEADER_SIZE + (long) termCount * Long.BYTES;
+        try (DataOutputStream out = openOutput(partial)) {
+            out.writeInt(PositionIndex.MAGIC);
+            out.writeInt(PositionIndex.VERSION);
+            out.writeInt(termCount);
+            for (int termId = 0; termId < termCount; termId++) {
+                out.writeLong(dataOffset + positionOffsets[termId]);
+            }
+            Files.copy(positionsPath, out);
+        }
+        Files.move(partial, PositionIndex.pathFor(path),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Write the SegmentStatistics file: header, then the terms sorted by their
+     * UTF-8 bytes with their document frequencies, behind a table of their
+     * offsets for binary search.
+     */
+    private void writeStatistics(int[] documentFrequencies) throws IOException {
+        int termCount = documentFrequencies.length;
+        byte[][] terms = new byte[termCount][];
+        Integer[] order = new Integer[termCount];
+        for (int termId = 0; termId < termCount; termId++) {
+            terms[termId] = encode(dictionary.getTerm(termId));
+            order[termId] = termId;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(terms[a], terms[b]));
+        long totalLength = 0;
+        for (int docId = 0; docId < documentCount; docId++) totalLength += documentLengths[docId];
+
+        Path partial = tempDir.resolve("statistics.tmp");
+        try (DataOutputStream out = openOutput(partial)) {
+            out.writeInt(SegmentStatistics.MAGIC);
+            out.writeInt(SegmentStatistics.VERSION);
+            out.writeInt(documentCount);
+            out.writeInt(termCount);
+            out.writeLong(totalLength);
+            int offset = 0;
+            for (int i = 0; i < termCount; i++) {
+                out.writeInt(offset);
+                offset += Short.BYTES + terms[order[i]].length + Integer.BYTES;
+            }
+            for (int i = 0; i < termCount; i++) {
+                writeBytes(out, terms[order[i]]);
+                out.writeInt(documentFrequencies[order[i]]);
+            }
+        }
+        Files.move(partial, SegmentStatistics.pathFor(path),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Copy the merged dictionary, adding the max score, max count and max count /
+     * length of every term. Norms are only
+     * known once all terms are merged, so this is a second sequential pass over the postings.
+     */
+    private void writeDictionary(DataOutputStream out, Path dictionaryPath, Path postingsPath,
+                                 int termCount, double[] norms) throws IOException {
+        try (DataInputStream dictionaryIn = openInput(dictionaryPath);
+             DataInputStream postingsIn = openInput(postingsPath)) {
+            int[] docIds = new int[16];
+            for (int i = 0; i < termCount; i++) {
+                byte[] termBytes = new byte[dictionaryIn.readUnsignedShort()];
+                dictionaryIn.readFully(termBytes);
+                int documentFrequency = dictionaryIn.readInt();
+                long offset = dictionaryIn.readLong();
+
+                if (docIds.length < documentFrequency) docIds = new int[documentFrequency];
+                for (int j = 0; j < documentFrequency; j++) docIds[j] = postingsIn.readInt();
+                double maxScore = 0.0;
+                int maxCount = 0;
+                double maxCountRatio = 0.0;
+                for (int j = 0; j < documentFrequency; j++) {
+                    int count = postingsIn.readInt();
+                    maxCount = Math.max(maxCount, count);
+                    maxCountRatio = Math.max(maxCountRatio, (double) count / documentLengths[docIds[j]]);
+                    double norm = norms[docIds[j]];
+                    // Documents without a positive weight have no norm and never score
+                    if (norm > 0.0) {
+                        maxScore = Math.max(maxScore,
+                                TfIdfBuilder.termFrequency(count, documentLengths[docIds[j]]) / norm);
+                    }
+                }
+
+                writeBytes(out, termBytes);
+                out.writeInt(documentFrequency);
+                out.writeDouble(maxScore);
+                out.writeInt(maxCount);
+                out.writeDouble(maxCountRatio);
+                out.writeLong(offset);
+            }
+        }
+    }
+
+    /**
+     * Write the postings of a term in the block format: skip table, then per block
+     * the doc id gaps and the counts as VByte.
+     */
+    private static void encodePostings(PostingsBuffer postings, ByteArrayOutputStream out) throws IOException {
+        int blockCount = (postings.size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        int[] blockOffsets = new int[blockCount];
+        int previous = 0;
+        for (int block = 0; block < blockCount; block++) {
+            blockOffsets[block] = blocks.size();
+            int from = block * BLOCK_SIZE;
+            int to = Math.min(from + BLOCK_SIZE, postings.size);
+            for (int i = from; i < to; i++) {
+                writeVInt(blocks, postings.docIds[i] - previous);
+                previous = postings.docIds[i];
+            }
+            for (int i = from; i < to; i++) {
+                writeVInt(blocks, postings.counts[i]);
+            }
+        }
+        if (blockCount > 1) {
+            for (int block = 0; block < blockCount; block++) {
+                int last = Math.min((block + 1) * BLOCK_SIZE, postings.size) - 1;
+                writeInt(out, postings.docIds[last]);
+                writeInt(out, blockOffsets[block]);
+            }
+        }
+        blocks.writeTo(out);
+    }
+
+    /**
+     * Write the positions of a term in the PositionIndex format: block table,
+     * then the position gaps of every posting as VByte, in the blocks of the postings.
+     */
+    private static void encodePositions(PostingsBuffer postings, ByteArrayOutputStream out) throws IOException {
+        int blockCount = (postings.size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        int[] blockOffsets = new int[blockCount];
+        int next = 0;
+        for (int i = 0; i < postings.size; i++) {
+            if (i % BLOCK_SIZE == 0) blockOffsets[i / BLOCK_SIZE] = blocks.size();
+            int previous = 0;
+            for (int end = next + postings.counts[i]; next < end; next++) {
+                writeVInt(blocks, postings.positions[next] - previous);
+                previous = postings.positions[next];
+            }
+        }
+        if (blockCount > 1) {
+            for (int offset : blockOffsets) writeInt(out, offset);
+        }
+        blocks.writeTo(out);
+    }
+
+    /** Variable-byte int: 7 bits per byte, low bits first, high bit set on all but the last byte */
+    private static void writeVInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 24);
+        out.write(value >>> 16);
+        out.write(value >>> 8);
+        out.write(value);
+    }
+
+    /** Delete the temporary run files. */
+    @Override
+    public void close() throws IOException {
+        docNamesOut.close();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tempDir)) {
+            for (Path file : files) Files.deleteIfExists(file);
+        }
+        Files.deleteIfExists(tempDir);
+    }
+
+    private static DataOutputStream openOutput(Path path) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+    }
+
+    private static DataInputStream openInput(Path path) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16));
+    }
+
+    private static byte[] encode(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("String too long for index: " + s.substring(0, 32) + "...");
+        }
+        return bytes;
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    /** Growable (docId, count) postings buffer, with the positions of every posting one after the other. */
+    private static class PostingsBuffer {
+        int[] docIds = new int[4];
+        int[] counts = new int[4];
+        int size;
+        int[] positions = new int[0];
+        int positionCount;
+
+        void add(int docId, int count) {
+            if (size == docIds.length) {
+                docIds = Arrays.copyOf(docIds, size * 2);
+                counts = Arrays.copyOf(counts, size * 2);
+            }
+            docIds[size] = docId;
+            counts[size] = count;
+            size++;
+        }
+
+        void addPositions(int[] source, int from, int count) {
+            if (positionCount + count > positions.length) {
+                positions = Arrays.copyOf(positions, Math.max(positionCount + count, positions.length * 2));
+            }
+            System.arraycopy(source, from, positions, positionCount, count);
+            positionCount += count;
+        }
+    }
+
+    /** Sequential reader over the terms of a run file. */
+    private static class RunReader implements Closeable {
+        final int runIndex;
+        private final DataInputStream in;
+        private final boolean positions;
+        private int remainingTerms;
+        int termId;
+        private int postingCount;
+
+        RunReader(Path run, int runIndex, boolean positions) throws IOException {
+            this.runIndex = runIndex;
+            this.positions = positions;
+            this.in = openInput(run);
+            this.remainingTerms = in.readInt();
+        }
+
+        /** Advance to the next term; false at the end of the run. */
+        boolean next() throws IOException {
+            if (remainingTerms == 0) return false;
+            remainingTerms--;
+            termId = in.readInt();
+            postingCount = in.readInt();
+            return true;
+        }
+
+        /** Append the postings of the current term, and their positions if the run has them. */
+        void readPostings(PostingsBuffer target) throws IOException {
+            int positionCount = 0;
+            for (int i = 0; i < postingCount; i++) {
+                target.add(in.readInt(), in.readInt());
+                positionCount += target.counts[target.size - 1];
+            }
+            if (!positions) return;
+            int[] buffer = new int[Math.min(positionCount, 1 << 12)];
+            while (positionCount > 0) {
+                int n = Math.min(positionCount, buffer.length);
+                for (int i = 0; i < n; i++) buffer[i] = in.readInt();
+                target.addPositions(buffer, 0, n);
+                positionCount -= n;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,487 @@
+package com.myorg.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InvertedIndex - Maps every term to the list of documents that contain it, for
+ * one segment of the index. Opened from the binary segment written by IndexWriter:
+ * the term dictionary and the document lengths and norms are read onto the heap,
+ * while the postings and document paths stay in the memory-mapped file and are
+ * decoded on demand: opening costs one pass over the dictionary and doc table,
+ * the rest is paged in by the queries that need it. Per-term statistics are kept
+ * in primitive arrays indexed by term id; callers resolve a term to its id once
+ * and use the id for everything else. IndexSnapshot combines the segments of an index.
+ * Segments written with positions also open their PositionIndex, which is not
+ * read until a phrase or proximity query asks for positions.
+ */
+public class InvertedIndex {
+
+    /** Terms in at least one document out of DENSE_RATIO get dense count blocks */
+    private static final int DENSE_RATIO = 8;
+    /** Heap bytes of dense count blocks kept per segment */
+    private static final long DENSE_BUDGET = 64L << 20;
+
+    private final ByteBuffer documents;
+    private final int[] documentOffsets;
+    private final int[] documentLengths;
+    private final double[] documentNorms;
+    private final TermDictionary dictionary;
+    private final int[] documentFrequencies;
+    private final double[] maxScores;
+    private final int[] maxCounts;
+    private final double[] maxCountRatios;
+    private final int[] offsets;
+    private final ByteBuffer postings;
+    private final PositionIndex positions;
+    private final Map<Integer, float[]> denseCounts = new ConcurrentHashMap<>();
+    private final AtomicLong denseBytes = new AtomicLong();
+    private final long totalLength;
+    private volatile double[] documentScales;
+
+    private InvertedIndex(ByteBuffer documents, int[] documentOffsets, int[] documentLengths,
+                          double[] documentNorms, TermDictionary dictionary,
+                          int[] documentFrequencies, double[] maxScores, int[] maxCounts, double[] maxCountRatios,
+                          int[] offsets, ByteBuffer postings, PositionIndex positions) {
+        this.documents = documents;
+        this.documentOffsets = documentOffsets;
+        this.documentLengths = documentLengths;
+        this.documentNorms = documentNorms;
+        this.dictionary = dictionary;
+        this.documentFrequencies = documentFrequencies;
+        this.maxScores = maxScores;
+        this.maxCounts = maxCounts;
+        this.maxCountRatios = maxCountRatios;
+        this.offsets = offsets;
+        this.postings = postings;
+        this.positions = positions;
+        long total = 0;
+        for (int length : documentLengths) total += length;
+        this.totalLength = total;
+    }
+
+    /**
+     * Memory-map an index file written by IndexWriter, and its positions if it has any.
+     */
+    public static InvertedIndex open(Path path) throws IOException {
+        // Positions first: IndexWriter moves them into place before the segment
+        Path positionsPath = PositionIndex.pathFor(path);
+        PositionIndex positions = Files.exists(positionsPath) ? PositionIndex.open(positionsPath) : null;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            checkMappable(path, channel);
+            return fromBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), positions);
+        }
+    }
+
+    /**
+     * Fail clearly on a file too large to map as one buffer, see IndexWriter.MAX_FILE_BYTES.
+     */
+    static void checkMappable(Path path, FileChannel channel) throws IOException {
+        if (channel.size() > IndexWriter.MAX_FILE_BYTES) {
+            throw new IOException("❌ " + path.getFileName() + " is " + channel.size()
+                    + " bytes, too large to map, please rebuild the index.");
+        }
+    }
+
+    /**
+     * Read an index from a buffer holding the binary index format.
+     */
+    public static InvertedIndex fromBuffer(ByteBuffer buffer) throws IOException {
+        return fromBuffer(buffer, null);
+    }
+
+    /**
+     * @param positions Positions of the segment, or null if it has none
+     */
+    private static InvertedIndex fromBuffer(ByteBuffer buffer, PositionIndex positions) throws IOException {
+        ByteBuffer header = buffer.duplicate();
+        if (header.remaining() < IndexWriter.HEADER_SIZE || header.getInt() != IndexWriter.MAGIC) {
+            throw new IOException("❌ Not a search index file!");
+        }
+        int version = header.getInt();
+        if (version != IndexWriter.VERSION) {
+            throw new IOException("❌ Unsupported index version " + version + ", please rebuild the index.");
+        }
+        int documentCount = header.getInt();
+        int termCount = header.getInt();
+        long docTableOffset = header.getLong();
+        long dictionaryOffset = header.getLong();
+        long postingsOffset = header.getLong();
+
+        // Document table: relative path, source, length and norm of every document. Every
+        // query needs the lengths and norms; paths are only decoded for displayed results
+        ByteBuffer docTable = buffer.duplicate().position((int) docTableOffset);
+        int[] documentOffsets = new int[documentCount];
+        int[] documentLengths = new int[documentCount];
+        double[] documentNorms = new double[documentCount];
+        for (int docId = 0; docId < documentCount; docId++) {
+            documentOffsets[docId] = docTable.position();
+            skipString(docTable);
+            skipString(docTable);
+            documentLengths[docId] = docTable.getInt();
+            documentNorms[docId] = docTable.getDouble();
+        }
+
+        // Term dictionary, in term id order: document frequency, bounds and postings offset
+        ByteBuffer dict = buffer.duplicate().position((int) dictionaryOffset);
+        TermDictionary dictionary = new TermDictionary(termCount);
+        int[] documentFrequencies = new int[termCount];
+        double[] maxScores = new double[termCount];
+        int[] maxCounts = new int[termCount];
+        double[] maxCountRatios = new double[termCount];
+        int[] offsets = new int[termCount];
+        for (int termId = 0; termId < termCount; termId++) {
+            dictionary.getOrAdd(readString(dict));
+            documentFrequencies[termId] = dict.getInt();
+            maxScores[termId] = dict.getDouble();
+            maxCounts[termId] = dict.getInt();
+            maxCountRatios[termId] = dict.getDouble();
+            offsets[termId] = (int) dict.getLong();
+        }
+
+        if (positions != null && positions.getTermCount() != termCount) {
+            throw new IOException("❌ Positions do not belong to the index, please rebuild the index.");
+        }
+        ByteBuffer postings = buffer.duplicate().position((int) postingsOffset).slice();
+        return new InvertedIndex(buffer.duplicate(), documentOffsets, documentLengths, documentNorms, dictionary,
+                documentFrequencies, maxScores, maxCounts, maxCountRatios, offsets, postings, positions);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * Id of the term, or -1 if it is not in the index.
+     */
+    public int getTermId(String term) {
+        return dictionary.getId(term);
+    }
+
+    public String getTerm(int termId) {
+        return dictionary.getTerm(termId);
+    }
+
+    /** Dictionary of the segment, shared by single-segment snapshots; never modified once open */
+    TermDictionary getDictionary() {
+        return dictionary;
+    }
+
+    /**
+     * Postings of a term, or null if the term does not occur in any document.
+     */
+    public PostingList getPostings(int termId) {
+        int documentFrequency = documentFrequencies[termId];
+        if (documentFrequency == 0) {
+            return null;
+        }
+        return new PostingList(postings, offsets[termId], documentFrequency);
+    }
+
+    /** Whether the segment was written with the positions of its terms */
+    public boolean hasPositions() {
+        return positions != null;
+    }
+
+    /**
+     * Positions of a term in each document of its postings, or null if the term
+     * does not occur in any document or the segment has no positions.
+     */
+    public PositionIndex.PositionList getPositions(int termId) {
+        PostingList postingList = getPostings(termId);
+        if (positions == null || postingList == null) {
+            return null;
+        }
+        return positions.getPositions(termId, postingList);
+    }
+
+    /**
+     * Counts of a frequent term as a dense block, one element per document of the
+     * segment and 0 where the term does not occur, for ScoreKernel. Built from the
+     * postings on first use and kept on the heap, within DENSE_BUDGET per segment.
+     *
+     * @return The block, or null if the term is too rare or the budget is used up
+     */
+    public float[] getDenseCounts(int termId) {
+        int documentCount = getDocumentCount();
+        int documentFrequency = documentFrequencies[termId];
+        if (documentFrequency == 0 || (long) documentFrequency * DENSE_RATIO < documentCount) {
+            return null;
+        }
+        float[] counts = denseCounts.get(termId);
+        if (counts != null) {
+            return counts;
+        }
+        long bytes = (long) documentCount * Float.BYTES;
+        if (denseBytes.addAndGet(bytes) > DENSE_BUDGET) {
+            denseBytes.addAndGet(-bytes);
+            return null;
+        }
+        counts = new float[documentCount];
+        PostingList postingList = getPostings(termId);
+        for (int i = 0; i < postingList.size(); i++) {
+            counts[postingList.getDocId(i)] = postingList.getCount(i);
+        }
+        float[] previous = denseCounts.putIfAbsent(termId, counts);
+        if (previous != null) {
+            denseBytes.addAndGet(-bytes);
+            return previous;
+        }
+        return counts;
+    }
+
+    /**
+     * Largest term frequency / document norm over the postings of the term: times
+     * the IDF, an upper bound of its contribution to any cosine score, per unit of
+     * query weight.
+     */
+    public double getMaxScore(int termId) {
+        return maxScores[termId];
+    }
+
+    /** Largest count of the term in a document */
+    public int getMaxCount(int termId) {
+        return maxCounts[termId];
+    }
+
+    /** Largest count / document length of the term over its postings */
+    public double getMaxCountRatio(int termId) {
+        return maxCountRatios[termId];
+    }
+
+    /**
+     * Number of documents of this segment containing the term, deleted ones included.
+     */
+    public int getDocumentFrequency(int termId) {
+        return documentFrequencies[termId];
+    }
+
+    /**
+     * Path of the document relative to the corpus, unique per document.
+     */
+    public String getDocumentPath(int docId) {
+        return readString(documents.duplicate().position(documentOffsets[docId]));
+    }
+
+    /**
+     * Corpus source of the document (Hespres, Medi1TV, ...).
+     */
+    public String getDocumentSource(int docId) {
+        ByteBuffer record = documents.duplicate().position(documentOffsets[docId]);
+        skipString(record);
+        return readString(record);
+    }
+
+    /**
+     * Number of tokens of the document after preprocessing.
+     */
+    public int getDocumentLength(int docId) {
+        return documentLengths[docId];
+    }
+
+    /** Sum of the lengths of all documents of the segment, deleted ones included */
+    public long getTotalLength() {
+        return totalLength;
+    }
+
+    public double getDocumentNorm(int docId) {
+        return documentNorms[docId];
+    }
+
+    /**
+     * 1 / (length × norm) of every document, or 0 for documents without norm:
+     * the factor turning Σ query weight × IDF × count into a cosine score.
+     * Computed on first use.
+     */
+    public double[] getDocumentScales() {
+        double[] scales = documentScales;
+        if (scales == null) {
+            scales = new double[documentLengths.length];
+            for (int docId = 0; docId < scales.length; docId++) {
+                double documentNorm = documentNorms[docId];
+                scales[docId] = documentNorm == 0.0 ? 0.0 : 1.0 / (documentLengths[docId] * documentNorm);
+            }
+            documentScales = scales;
+        }
+        return scales;
+    }
+
+    /**
+     * Drop the dense blocks and document scales built on first use, once no
+     * snapshot searches this segment anymore. They are rebuilt if it is searched again.
+     */
+    public void releaseCaches() {
+        denseCounts.clear();
+        denseBytes.set(0);
+        documentScales = null;
+    }
+
+    public int getDocumentCount() {
+        return documentLengths.length;
+    }
+
+    public int getTermCount() {
+        return dictionary.size();
+    }
+
+    /**
+     * Total number of postings over all terms.
+     */
+    public long getPostingCount() {
+        long count = 0;
+        for (int documentFrequency : documentFrequencies) {
+            count += documentFrequency;
+        }
+        return count;
+    }
+
+    /**
+     * PostingList - Documents containing a term, sorted by document id,
+     * with the number of occurrences of the term in each of them. A view over
+     * the postings section that decodes one block of IndexWriter.BLOCK_SIZE
+     * postings at a time, so reading the postings in order decodes each block
+     * once; the counts of a block are only decoded when asked for, as skipping
+     * through a list mostly needs doc ids. Not thread-safe: every reader gets
+     * its own from getPostings.
+     */
+    public static class PostingList {
+        private static final int BLOCK_SIZE = IndexWriter.BLOCK_SIZE;
+
+        private final ByteBuffer buffer;
+        private final int skipOffset;
+        private final int blocksOffset;
+        private final int blockCount;
+        private final int size;
+        private final int[] docIds = new int[BLOCK_SIZE];
+        private final int[] counts = new int[BLOCK_SIZE];
+        private int block = -1;
+        private int countsPosition = -1;
+
+        private PostingList(ByteBuffer buffer, int offset, int size) {
+            this.buffer = buffer;
+            this.size = size;
+            this.blockCount = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            this.skipOffset = offset;
+            this.blocksOffset = blockCount > 1 ? offset + blockCount * IndexWriter.SKIP_ENTRY_BYTES : offset;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getDocId(int index) {
+            decode(index / BLOCK_SIZE);
+            return docIds[index % BLOCK_SIZE];
+        }
+
+        public int getCount(int index) {
+            decode(index / BLOCK_SIZE);
+            if (countsPosition >= 0) decodeCounts();
+            return counts[index % BLOCK_SIZE];
+        }
+
+        /**
+         * Index of the first posting at or after {@code from} whose doc id is at least
+         * {@code target}, or size() if there is none. Skips whole blocks by their
+         * last doc id, galloping over the skip table, then binary searches the block.
+         */
+        public int advance(int from, int target) {
+            if (from >= size || getDocId(from) >= target) return from;
+            int first = from / BLOCK_SIZE;
+            int b = first;
+            if (lastDocId(b) < target) {
+                // Invariant: lastDocId(low) < target, and lastDocId(high) >= target or high == blockCount
+                int low = b;
+                int step = 1;
+                int high = b + step;
+                while (high < blockCount && lastDocId(high) < target) {
+                    low = high;
+                    step <<= 1;
+                    high = b + step;
+                }
+                high = Math.min(high, blockCount);
+                while (high - low > 1) {
+                    int mid = (low + high) >>> 1;
+                    if (lastDocId(mid) < target) low = mid;
+                    else high = mid;
+                }
+                if (high == blockCount) return size;
+                b = high;
+            }
+            decode(b);
+            int low = b == first ? from % BLOCK_SIZE : 0;
+            int high = Math.min(BLOCK_SIZE, size - b * BLOCK_SIZE) - 1;
+            // docIds[high] >= target: find the first such position in [low, high]
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (docIds[mid] < target) low = mid + 1;
+                else high = mid;
+            }
+            return b * BLOCK_SIZE + low;
+        }
+
+        /** Last doc id of a block, from the skip table when there is one */
+        private int lastDocId(int b) {
+            if (blockCount == 1) {
+                decode(0);
+                return docIds[size - 1];
+            }
+            return buffer.getInt(skipOffset + b * IndexWriter.SKIP_ENTRY_BYTES);
+        }
+
+        private void decode(int b) {
+            if (b == block) return;
+            int position = blocksOffset;
+            int docId = 0;
+            if (b > 0) {
+                position += buffer.getInt(skipOffset + b * IndexWriter.SKIP_ENTRY_BYTES + Integer.BYTES);
+                docId = buffer.getInt(skipOffset + (b - 1) * IndexWriter.SKIP_ENTRY_BYTES);
+            }
+            int n = Math.min(BLOCK_SIZE, size - b * BLOCK_SIZE);
+            for (int i = 0; i < n; i++) {
+                int value = 0;
+                int shift = 0;
+                byte next;
+                do {
+                    next = buffer.get(position++);
+                    value |= (next & 0x7F) << shift;
+                    shift += 7;
+                } while (next < 0);
+                docId += value;
+                docIds[i] = docId;
+            }
+            block = b;
+            countsPosition = position;
+        }
+
+        private void decodeCounts() {
+            int position = countsPosition;
+            int n = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+            for (int i = 0; i < n; i++) {
+                int value = 0;
+                int shift = 0;
+                byte next;
+                do {
+                    next = buffer.get(position++);
+                    value |= (next & 0x7F) << shift;
+                    shift += 7;
+                } while (next < 0);
+                counts[i] = value;
+            }
+            countsPosition = -1;
+        }
+    }
+}
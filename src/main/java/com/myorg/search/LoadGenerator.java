@@ -0,0 +1,159 @@
+package com.myorg.search;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Local load generator for SearchServer: concurrent clients send /search
+ * requests over kept-alive HTTP/1.1 connections, then latency percentiles and
+ * throughput are reported. Queries are random 1-3 word combinations drawn from
+ * the corpus, or lines of a query file.
+ *
+ * Usage: LoadGenerator [--url=http://localhost:8080] [--concurrency=16]
+ *                      [--requests=10000] [--warmup=1000] [--k=10] [--queries=FILE]
+ */
+public class LoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        String url = "http://localhost:8080";
+        int concurrency = 16;
+        int requests = 10_000;
+        int warmup = 1_000;
+        int topK = 10;
+        Path queryFile = null;
+        for (String arg : args) {
+            if (arg.startsWith("--url=")) url = arg.substring("--url=".length());
+            else if (arg.startsWith("--concurrency=")) concurrency = Integer.parseInt(arg.substring("--concurrency=".length()));
+            else if (arg.startsWith("--requests=")) requests = Integer.parseInt(arg.substring("--requests=".length()));
+            else if (arg.startsWith("--warmup=")) warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+            else if (arg.startsWith("--k=")) topK = Integer.parseInt(arg.substring("--k=".length()));
+            else if (arg.startsWith("--queries=")) queryFile = Paths.get(arg.substring("--queries=".length()));
+        }
+
+        List<String> queries = queryFile != null ? readQueries(queryFile) : corpusQueries(2_000, 42);
+        System.out.println("🚀 Load test: " + url + ", " + concurrency + " clients, "
+                + requests + " requests (+" + warmup + " warm-up), " + queries.size() + " distinct queries");
+        System.out.println("=".repeat(60));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(concurrency))
+                .build();
+        run(client, url, queries, topK, concurrency, warmup);
+        Result result = run(client, url, queries, topK, concurrency, requests);
+
+        long[] latencies = result.latencies;
+        Arrays.sort(latencies);
+        System.out.printf("   Throughput: %.0f requests/s%n", result.count / result.seconds);
+        System.out.printf("   Latency:    p50 %.2f ms, p90 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                percentile(latencies, 50), percentile(latencies, 90), percentile(latencies, 99),
+                latencies.length == 0 ? 0.0 : latencies[latencies.length - 1] / 1e6);
+        System.out.println("   Responses:  " + result.ok.get() + " ok, " + result.rejected.get()
+                + " rejected (503), " + result.errors.get() + " errors");
+        System.out.println("=".repeat(60));
+        System.exit(result.errors.get() == 0 ? 0 : 1);
+    }
+
+    /** Send count requests from concurrency clients, each waiting for its response before the next */
+    private static Result run(HttpClient client, String url, List<String> queries, int topK,
+                              int concurrency, int count) throws InterruptedException {
+        Result result = new Result(count);
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        for (int c = 0; c < concurrency; c++) {
+            clients.execute(() -> {
+                Random random = new Random(Thread.currentThread().getId());
+                int i;
+                while ((i = next.getAndIncrement()) < count) {
+                    String query = queries.get(random.nextInt(queries.size()));
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/search?q="
+                            + URLEncoder.encode(query, StandardCharsets.UTF_8) + "&k=" + topK)).GET().build();
+                    long sent = System.nanoTime();
+                    try {
+                        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                        result.latencies[i] = System.nanoTime() - sent;
+                        if (response.statusCode() == 200) result.ok.incrementAndGet();
+                        else if (response.statusCode() == 503) result.rejected.incrementAndGet();
+                        else result.errors.incrementAndGet();
+                    } catch (IOException e) {
+                        result.latencies[i] = System.nanoTime() - sent;
+                        result.errors.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(1, TimeUnit.HOURS);
+        result.seconds = (System.nanoTime() - start) / 1e9;
+        return result;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0.0;
+        int index = (int) Math.ceil(p / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6;
+    }
+
+    private static List<String> readQueries(Path file) throws IOException {
+        List<String> queries = new ArrayList<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) queries.add(line.trim());
+        }
+        return queries;
+    }
+
+    /** Random 1-3 word queries made of words of the corpus */
+    private static List<String> corpusQueries(int count, long seed) throws IOException {
+        List<String> words = new ArrayList<>();
+        for (java.io.File file : new Preprocessor(new StemCache(16), Paths.get(Preprocessor.CORPUS_PATH), null)
+                .listCorpusFiles()) {
+            for (String word : Files.readString(file.toPath(), StandardCharsets.UTF_8).split("[\\s\\p{Punct}،؛؟]+")) {
+                if (word.length() > 2) words.add(word);
+            }
+        }
+        Random random = new Random(seed);
+        List<String> queries = new ArrayList<>(count);
+        for (int q = 0; q < count; q++) {
+            int terms = 1 + random.nextInt(3);
+            StringBuilder query = new StringBuilder();
+            for (int t = 0; t < terms; t++) {
+                if (t > 0) query.append(' ');
+                query.append(words.get(random.nextInt(words.size())));
+            }
+            queries.add(query.toString());
+        }
+        return queries;
+    }
+
+    /**
+     * Result - Latencies and response counts of one run.
+     */
+    private static class Result {
+        private final long[] latencies;
+        private final int count;
+        private final AtomicInteger ok = new AtomicInteger();
+        private final AtomicInteger rejected = new AtomicInteger();
+        private final AtomicInteger errors = new AtomicInteger();
+        private double seconds;
+
+        Result(int count) {
+            this.count = count;
+            this.latencies = new long[count];
+        }
+    }
+}
@@ -8,18 +8,20 @@ public class Main {
         System.out.println("👉 Modules: Preprocessing → TF-IDF → Search");
 
         try {
-            // Step 1: Build TF-IDF matrix (only if needed)
-            File matrixFile = new File("src/main/resources/output/matrix.csv");
+            // Step 1: Build TF-IDF index, or bring the existing one up to date with the corpus
+            File indexFile = new File(TfIdfBuilder.INDEX_PATH, IndexManifest.FILE_NAME);
+            TfIdfBuilder builder = new TfIdfBuilder();
             
-            if (!matrixFile.exists()) {
+            if (!indexFile.exists()) {
                 System.out.println("\n" + "=".repeat(60));
-                System.out.println("⚠️ Matrix not found - Building TF-IDF Matrix...");
+                System.out.println("⚠️ Index not found - Building TF-IDF Index...");
                 System.out.println("=".repeat(60));
-                TfIdfBuilder builder = new TfIdfBuilder();
                 builder.runPipeline();
             } else {
-                System.out.println("\n✅ Using existing TF-IDF matrix");
-                System.out.println("   (To rebuild, delete: " + matrixFile.getAbsolutePath() + ")");
+                System.out.println("\n✅ Using existing TF-IDF index");
+                System.out.println("   (To rebuild, delete: " + indexFile.getParentFile().getAbsolutePath() + ")");
+                // Segment merges started by the update run in the background while we search
+                builder.update();
             }
 
             // Step 2: Launch Search Engine
@@ -30,6 +32,7 @@ public class Main {
             
             // Interactive search mode
             engine.interactiveSearch();
+            builder.awaitMerges();
 
         } catch (Exception e) {
             System.err.println("❌ Error occurred:");
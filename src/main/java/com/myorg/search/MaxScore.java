@@ -0,0 +1,158 @@
+package com.myorg.search;
+
+import java.util.*;
+
+/**
+ * MaxScore - Document-at-a-time traversal of the postings of the query terms
+ * with MaxScore dynamic pruning, shared by CosineSimilarity and Bm25.
+ *
+ * Query terms are ordered by their score upper bound, and once the top-K heap
+ * is full, terms whose combined upper bounds cannot beat the current threshold
+ * are only probed for documents found through the other terms. The scorer
+ * gives the weight and upper bound of each term and, through a Scoring, how
+ * its postings add up to the score of a document.
+ *
+ * With a filter, its DocIdIterator is advanced together with the cursors: a
+ * document is only scored once both reach it, and whichever is behind gallops
+ * to the other, so a rare filter skips most postings of frequent query terms.
+ */
+final class MaxScore {
+
+    private MaxScore() {
+    }
+
+    /**
+     * Scoring - Score of a document from its postings. documentScore must be
+     * linear in the sum of the term scores, so that the upper bound of a term,
+     * taken after documentScore, adds up with the partial score of a document.
+     */
+    interface Scoring {
+        /** Part of the score depending on the document alone, e.g. its length normalization; NaN if it cannot score */
+        double documentFactor(int docId);
+
+        /** Score of a posting: a term of the given weight occurring count times in the document */
+        double termScore(double weight, int count, double documentFactor);
+
+        /** Score of a document from the sum of the term scores of its postings */
+        double documentScore(double termScoreSum, double documentFactor);
+    }
+
+    /**
+     * Rank the documents of a segment that the cursors reach into the collector.
+     *
+     * @param cursorList One cursor per query term, in any order
+     * @param matches Documents matching the filter, or null
+     * @param docBase Global id of the first document of the segment
+     */
+    static void rank(List<Cursor> cursorList, Scoring scoring, IndexSnapshot.Segment segment,
+                     DocIdIterator matches, int docBase, TopKCollector collector) {
+        Cursor[] cursors = cursorList.toArray(new Cursor[0]);
+        Arrays.sort(cursors, Comparator.comparingDouble(c -> c.upperBound));
+        int n = cursors.length;
+
+        // boundSum[i] = sum of the upper bounds of cursors[0..i], padded against rounding
+        double[] boundSum = new double[n];
+        for (int i = 0; i < n; i++) {
+            boundSum[i] = (i > 0 ? boundSum[i - 1] : 0.0) + cursors[i].upperBound * (1 + 1e-9);
+        }
+
+        int firstEssential = 0;
+        while (true) {
+            // Terms before firstEssential cannot make a document enter the heap on their own
+            double threshold = collector.threshold();
+            while (firstEssential < n && boundSum[firstEssential] <= threshold) {
+                firstEssential++;
+            }
+            if (firstEssential == n) break;
+
+            int docId = Integer.MAX_VALUE;
+            for (int i = firstEssential; i < n; i++) {
+                docId = Math.min(docId, cursors[i].docId());
+            }
+            if (docId == Integer.MAX_VALUE) break;
+
+            // Only documents matching the filter: otherwise move the cursors behind its next match up to it
+            if (matches != null) {
+                int match = matches.docId() < docId ? matches.advance(docId) : matches.docId();
+                if (match == DocIdIterator.NO_MORE_DOCS) break;
+                if (match != docId) {
+                    for (int i = firstEssential; i < n; i++) {
+                        if (cursors[i].docId() < match) cursors[i].advance(match);
+                    }
+                    continue;
+                }
+            }
+
+            double factor = segment.isLive(docId) ? scoring.documentFactor(docId) : Double.NaN;
+            if (Double.isNaN(factor)) {
+                for (int i = firstEssential; i < n; i++) {
+                    if (cursors[i].docId() == docId) cursors[i].next();
+                }
+                continue;
+            }
+
+            double sum = 0.0;
+            for (int i = firstEssential; i < n; i++) {
+                if (cursors[i].docId() == docId) {
+                    sum += scoring.termScore(cursors[i].weight, cursors[i].count(), factor);
+                    cursors[i].next();
+                }
+            }
+            for (int i = firstEssential - 1; i >= 0; i--) {
+                if (scoring.documentScore(sum, factor) + boundSum[i] <= threshold) break;
+                cursors[i].advance(docId);
+                if (cursors[i].docId() == docId) {
+                    sum += scoring.termScore(cursors[i].weight, cursors[i].count(), factor);
+                }
+            }
+
+            double score = scoring.documentScore(sum, factor);
+            if (score > threshold) {
+                collector.collect(docBase + docId, score);
+            }
+        }
+    }
+
+    /**
+     * Position in the postings of one query term.
+     */
+    static class Cursor {
+        final InvertedIndex.PostingList postings;
+        final int end;
+        final double weight;
+        final double upperBound;
+        int position;
+
+        /**
+         * @param end Documents from this id on are ignored
+         * @param weight Weight of the term, passed to Scoring.termScore
+         * @param upperBound Largest score the term adds to a document
+         */
+        Cursor(InvertedIndex.PostingList postings, int end, double weight, double upperBound) {
+            this.postings = postings;
+            this.end = end;
+            this.weight = weight;
+            this.upperBound = upperBound;
+        }
+
+        /** Current document id, or Integer.MAX_VALUE once exhausted or past the end of the range. */
+        int docId() {
+            if (position >= postings.size()) return Integer.MAX_VALUE;
+            int docId = postings.getDocId(position);
+            return docId < end ? docId : Integer.MAX_VALUE;
+        }
+
+        /** Count of the term in the current document */
+        int count() {
+            return postings.getCount(position);
+        }
+
+        void next() {
+            position++;
+        }
+
+        void advance(int target) {
+            position = postings.advance(position, target);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.myorg.search;
+
+import java.util.*;
+
+/**
+ * PhraseQuery - Terms that must occur next to each other and in order, from a
+ * quoted part of a query: "كرة القدم", «كرة القدم» or “كرة القدم”. QueryParser
+ * preprocesses the quoted text like the rest of the query, so the phrase is a
+ * sequence of stems and stopwords between them are ignored, as they are in the index.
+ *
+ * Matched per segment by intersecting the postings of the terms, rarest first,
+ * galloping over the skip tables, then comparing the positions of the terms in
+ * each document that has them all. Segments written without positions can only
+ * tell that a document has all the terms: there, a document having them all matches.
+ */
+public class PhraseQuery {
+
+    private final List<String> terms;
+
+    /**
+     * @param terms Stems of the phrase, in order
+     */
+    public PhraseQuery(List<String> terms) {
+        this.terms = List.copyOf(terms);
+    }
+
+    public List<String> getTerms() {
+        return terms;
+    }
+
+    /**
+     * Documents of a segment containing the phrase, deleted ones included.
+     */
+    public DocIdIterator iterator(IndexSnapshot snapshot, IndexSnapshot.Segment segment) {
+        InvertedIndex index = segment.getIndex();
+        int n = terms.size();
+        List<DocIdIterator.Postings> postings = new ArrayList<>(n);
+        PositionIndex.PositionList[] positions = index.hasPositions() ? new PositionIndex.PositionList[n] : null;
+        for (int k = 0; k < n; k++) {
+            int termId = snapshot.getTermId(terms.get(k));
+            int localId = termId >= 0 ? segment.getLocalTermId(termId) : -1;
+            InvertedIndex.PostingList postingList = localId >= 0 ? index.getPostings(localId) : null;
+            if (postingList == null) {
+                return new DocIdIterator.Empty();
+            }
+            postings.add(new DocIdIterator.Postings(postingList));
+            if (positions != null) positions[k] = index.getPositions(localId);
+        }
+        DocIdIterator conjunction = new DocIdIterator.Conjunction(postings);
+        return positions == null ? conjunction : new Adjacent(conjunction, postings, positions);
+    }
+
+    /**
+     * Adjacent - Documents of the conjunction of the terms where they occur at
+     * consecutive positions.
+     */
+    private static class Adjacent extends DocIdIterator {
+        private final DocIdIterator conjunction;
+        private final List<DocIdIterator.Postings> postings;
+        private final PositionIndex.PositionList[] positions;
+
+        Adjacent(DocIdIterator conjunction, List<DocIdIterator.Postings> postings,
+                 PositionIndex.PositionList[] positions) {
+            this.conjunction = conjunction;
+            this.postings = postings;
+            this.positions = positions;
+        }
+
+        @Override
+        public int docId() {
+            return conjunction.docId();
+        }
+
+        @Override
+        public int advance(int target) {
+            int doc = conjunction.advance(target);
+            while (doc != NO_MORE_DOCS && !isAdjacent(positions, postings)) {
+                doc = conjunction.advance(doc + 1);
+            }
+            return doc;
+        }
+
+        @Override
+        public long cost() {
+            return conjunction.cost();
+        }
+    }
+
+    /**
+     * Whether the terms occur at consecutive positions somewhere in the document:
+     * for every position p of the first term, term k at p + k, with one pointer
+     * per term moving forward only.
+     */
+    private static boolean isAdjacent(PositionIndex.PositionList[] positions, List<DocIdIterator.Postings> postings) {
+        int n = positions.length;
+        int[][] lists = new int[n][];
+        int[] counts = new int[n];
+        for (int k = 0; k < n; k++) {
+            int index = postings.get(k).index();
+            lists[k] = positions[k].getPositions(index);
+            counts[k] = positions[k].getCount(index);
+        }
+        int[] pointers = new int[n];
+        starts:
+        for (int i = 0; i < counts[0]; i++) {
+            int start = lists[0][i];
+            for (int k = 1; k < n; k++) {
+                int target = start + k;
+                while (pointers[k] < counts[k] && lists[k][pointers[k]] < target) pointers[k]++;
+                if (pointers[k] == counts[k]) return false;
+                if (lists[k][pointers[k]] != target) continue starts;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /** The phrase as quoted stems, e.g. "كر قدم" */
+    @Override
+    public String toString() {
+        return "\"" + String.join(" ", terms) + "\"";
+    }
+}
@@ -0,0 +1,154 @@
+package com.myorg.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * PositionIndex - Positions of every term in every document of a segment, for
+ * phrase and proximity queries. Written by IndexWriter next to the segment when
+ * positions are recorded, in a file of its own: _0.seg → _0.pos. The file is
+ * memory-mapped when the segment is opened, so it stays readable if a merge
+ * deletes it, but nothing is read from it until a query needs positions: other
+ * queries never touch its pages.
+ *
+ * A position is the index of a token among the preprocessed tokens of the
+ * document, stopwords excluded, so a phrase matches across removed stopwords.
+ *
+ * Layout (big-endian):
+ *   header     magic, version, termCount
+ *   offsets    per term, in term id order: long offset of its positions in the file
+ *   positions  per term, in the blocks of its postings:
+ *                block table  if more than one block: per block, int offset from the end of the table
+ *                positions    per posting, in postings order: as many VByte positions as its
+ *                             count, each the gap from the previous one (the first from 0)
+ */
+public class PositionIndex {
+
+    static final int MAGIC = 0x41534550; // "ASEP"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 3 * Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int termCount;
+
+    private PositionIndex(ByteBuffer buffer, int termCount) {
+        this.buffer = buffer;
+        this.termCount = termCount;
+    }
+
+    /**
+     * Positions belonging to a segment file: _0.seg → _0.pos
+     */
+    public static Path pathFor(Path indexPath) {
+        String name = indexPath.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return indexPath.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".pos");
+    }
+
+    /**
+     * Memory-map a positions file written by IndexWriter. Only the header is read.
+     */
+    public static PositionIndex open(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            InvertedIndex.checkMappable(path, channel);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("❌ Not a positions file!");
+        }
+        int version = buffer.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            throw new IOException("❌ Unsupported positions version " + version + ", please rebuild the index.");
+        }
+        return new PositionIndex(buffer, buffer.getInt(2 * Integer.BYTES));
+    }
+
+    public int getTermCount() {
+        return termCount;
+    }
+
+    /**
+     * Positions of a term, read alongside its postings.
+     *
+     * @param postings Postings of the term in the segment, for the number of positions of each
+     */
+    PositionList getPositions(int termId, InvertedIndex.PostingList postings) {
+        int offset = (int) buffer.getLong(HEADER_SIZE + termId * Long.BYTES);
+        return new PositionList(buffer, offset, postings);
+    }
+
+    /**
+     * PositionList - Positions of one term in each document of its posting list.
+     * Decodes sequentially from the start of the block of the posting asked for,
+     * or from the last posting read if that is closer, so reading postings in
+     * increasing order decodes every position once. Not thread-safe.
+     */
+    public static class PositionList {
+        private static final int BLOCK_SIZE = IndexWriter.BLOCK_SIZE;
+
+        private final ByteBuffer buffer;
+        private final InvertedIndex.PostingList postings;
+        private final int tableOffset;
+        private final int dataOffset;
+        private int[] positions = new int[16];
+        // Posting whose positions start at position in the buffer, or -1
+        private int next = -1;
+        private int position;
+        private int decoded = -1;
+
+        private PositionList(ByteBuffer buffer, int offset, InvertedIndex.PostingList postings) {
+            this.buffer = buffer;
+            this.postings = postings;
+            int blockCount = (postings.size() + BLOCK_SIZE - 1) / BLOCK_SIZE;
+            this.tableOffset = offset;
+            this.dataOffset = blockCount > 1 ? offset + blockCount * Integer.BYTES : offset;
+        }
+
+        /** Number of positions of a posting: the count of the term in its document */
+        public int getCount(int index) {
+            return postings.getCount(index);
+        }
+
+        /**
+         * Positions of the term in the document of a posting, ascending. The array
+         * is reused by the next call: only its first getCount(index) elements are valid.
+         */
+        public int[] getPositions(int index) {
+            if (index == decoded) return positions;
+            // Skip from the last posting read, or from the start of the block if that is closer
+            if (next < 0 || next > index || index - next > index % BLOCK_SIZE) {
+                int block = index / BLOCK_SIZE;
+                position = dataOffset + (block > 0 ? buffer.getInt(tableOffset + block * Integer.BYTES) : 0);
+                next = block * BLOCK_SIZE;
+            }
+            for (; next < index; next++) {
+                for (int i = postings.getCount(next); i > 0; i--) {
+                    while (buffer.get(position++) < 0) {
+                        // continuation byte
+                    }
+                }
+            }
+            int count = postings.getCount(index);
+            if (positions.length < count) positions = new int[Math.max(count, positions.length * 2)];
+            int value = 0;
+            for (int i = 0; i < count; i++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(position++);
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                value += gap;
+                positions[i] = value;
+            }
+            next = index + 1;
+            decoded = index;
+            return positions;
+        }
+    }
+}
@@ -5,19 +5,46 @@ import safar.basic.morphology.stemmer.interfaces.IStemmer;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Preprocessor {
 
     private static final String STOPWORDS_PATH = "src/main/resources/stopwords.txt";
-    private static final String CORPUS_PATH = "src/main/resources/Corpus";
+    public static final String CORPUS_PATH = "src/main/resources/Corpus";
+    public static final String STEM_CACHE_PATH = "src/main/resources/output/stems.tsv";
     private final Set<String> stopwords = new HashSet<>();
-    private final IStemmer stemmer;
+    private final StemCache stemCache;
+    private final Path corpusPath;
+    private final Path stemCachePath;
+    // Light10Stemmer makes no thread-safety guarantees, so each thread gets its own instance
+    private final ThreadLocal<IStemmer> stemmer = ThreadLocal.withInitial(this::initializeStemmer);
 
     public Preprocessor() {
+        this(StemCache.getShared());
+    }
+
+    /**
+     * @param stemCache Cache in front of the stemmer; warm-loaded from STEM_CACHE_PATH when empty
+     */
+    public Preprocessor(StemCache stemCache) {
+        this(stemCache, Paths.get(CORPUS_PATH), Paths.get(STEM_CACHE_PATH));
+    }
+
+    /**
+     * @param stemCache Cache in front of the stemmer
+     * @param corpusPath Folder scanned recursively for .txt documents
+     * @param stemCachePath File the stem cache is warm-loaded from when empty and saved to
+     *                      after an index build, or null to keep the cache in memory only
+     */
+    public Preprocessor(StemCache stemCache, Path corpusPath, Path stemCachePath) {
+        this.stemCache = stemCache;
+        this.corpusPath = corpusPath;
+        this.stemCachePath = stemCachePath;
         loadStopwords();
-        this.stemmer = initializeStemmer();
+        loadStemCache();
     }
 
     /** Load stopwords */
@@ -30,6 +57,26 @@ public class Preprocessor {
         }
     }
 
+    /** Warm the stem cache from the file saved by the last index build */
+    private void loadStemCache() {
+        if (stemCachePath == null || stemCache.size() > 0 || !Files.exists(stemCachePath)) return;
+        try {
+            stemCache.load(stemCachePath);
+            System.out.println("🧠 Stem cache loaded: " + stemCache.size() + " words");
+        } catch (IOException e) {
+            System.out.println("⚠️ Failed to load stem cache.");
+        }
+    }
+
+    public StemCache getStemCache() {
+        return stemCache;
+    }
+
+    /** Where the stem cache is persisted, or null if it is not */
+    public Path getStemCachePath() {
+        return stemCachePath;
+    }
+
     /** Initialize SAFAR stemmer - Light10Stemmer (more reliable) */
     private IStemmer initializeStemmer() {
         System.out.println("🔧 Initializing SAFAR stemmer (Light10)...");
@@ -47,24 +94,15 @@ public class Preprocessor {
     }
 
 
-    /** Normalize Arabic text */
-    private String normalizeArabic(String text) {
-        // Remove non-Arabic characters and diacritics
-        String result = text.replaceAll("[^\\p{IsArabic}\\s]", "");
-        result = result.replaceAll("[ًٌٍَُِّْ]", ""); // Remove diacritics
-        
-        // Normalize characters
-        result = result.replace("أ", "ا").replace("إ", "ا").replace("آ", "ا");
-        result = result.replace("ة", "ه").replace("ى", "ي");
-        result = result.replaceAll("\\s+", " "); // Normalize whitespace
-        
-        return result.trim();
+    /** Apply stemming through the stem cache */
+    private String stemWordCached(String word) {
+        return stemCache.get(word, this::stemWordSafe);
     }
 
     /** Apply stemming safely - Extract only the morpheme from SAFAR result */
     private String stemWordSafe(String word) {
         try {
-            List<?> results = stemmer.stem(word);
+            List<?> results = stemmer.get().stem(word);
             if (results != null && !results.isEmpty()) {
                 Object result = results.get(0);
                 // SAFAR returns StemmerAnalysis objects
@@ -93,27 +131,135 @@ public class Preprocessor {
 
     /** Tokenize, normalize, remove stopwords, and stem */
     public List<String> preprocessText(String text) {
-        return Arrays.stream(normalizeArabic(text).split("\\s+"))
-                .filter(t -> !t.isBlank() && !stopwords.contains(t))
-                .map(this::stemWordSafe)
-                .collect(Collectors.toList());
+        List<String> terms = new ArrayList<>();
+        ArabicTokenizer.tokenize(text, token -> {
+            if (!stopwords.contains(token)) {
+                terms.add(stemWordCached(token));
+            }
+        });
+        return terms;
+    }
+
+    /**
+     * Path of a corpus file relative to the corpus folder, with '/' separators.
+     * Unlike the file name, it is unique across sources and categories.
+     */
+    public String relativePath(File file) {
+        return corpusPath.toAbsolutePath().relativize(file.toPath().toAbsolutePath())
+                .toString().replace(File.separatorChar, '/');
+    }
+
+    /** Source of a corpus file: the first folder under the corpus, or "" for top-level files */
+    public String source(File file) {
+        String path = relativePath(file);
+        int slash = path.indexOf('/');
+        return slash > 0 ? path.substring(0, slash) : "";
     }
 
-    /** Load corpus documents */
+    /** Load corpus documents using one worker per available processor */
     public Map<String, List<String>> loadCorpus() {
+        return loadCorpus(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Load corpus documents, reading and preprocessing files on a pool of the given size.
+     * Documents are keyed by their path relative to the corpus, so files with the same
+     * name in different folders are kept apart.
+     */
+    public Map<String, List<String>> loadCorpus(int threads) {
         Map<String, List<String>> corpus = new HashMap<>();
-        File folder = new File(CORPUS_PATH);
-        Collection<File> files = FileUtils.listFiles(folder, new String[]{"txt"}, true);
+        try {
+            forEachDocument(threads, (file, tokens) -> corpus.put(relativePath(file), tokens));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return corpus;
+    }
+
+    /**
+     * Preprocess every corpus document and hand it to the consumer, one document at a time
+     * and in file listing order. Files are read and preprocessed on a pool of the given size,
+     * with at most a few documents per thread in flight, so memory does not grow with the corpus.
+     */
+    public void forEachDocument(int threads, DocumentConsumer consumer) throws IOException {
+        forEachDocument(listCorpusFiles(), threads, consumer);
+    }
+
+    /** Every .txt document under the corpus folder */
+    public List<File> listCorpusFiles() {
+        return new ArrayList<>(FileUtils.listFiles(corpusPath.toFile(), new String[]{"txt"}, true));
+    }
 
+    /**
+     * Preprocess the given corpus files, as forEachDocument(threads, consumer) does for the whole corpus.
+     */
+    public void forEachDocument(List<File> files, int threads, DocumentConsumer consumer) throws IOException {
         System.out.println("📄 Documents loaded: " + files.size());
-        for (File file : files) {
-            try {
-                String content = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
-                corpus.put(file.getName(), preprocessText(content));
-            } catch (IOException e) {
-                System.out.println("⚠️ Could not read file: " + file.getName());
+        if (threads <= 1) {
+            for (File file : files) {
+                List<String> tokens;
+                try {
+                    tokens = preprocessFile(file);
+                } catch (IOException e) {
+                    System.out.println("⚠️ Could not read file: " + file.getName());
+                    continue;
+                }
+                consumer.accept(file, tokens);
             }
+            return;
         }
-        return corpus;
+
+        System.out.println("🧵 Preprocessing with " + threads + " threads");
+        AtomicInteger workerCount = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "corpus-loader-" + workerCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        int window = threads * 4;
+        Deque<File> pendingFiles = new ArrayDeque<>(window);
+        Deque<Future<List<String>>> pending = new ArrayDeque<>(window);
+        try {
+            for (File file : files) {
+                pendingFiles.add(file);
+                pending.add(pool.submit(() -> preprocessFile(file)));
+                if (pending.size() >= window) {
+                    deliver(pendingFiles.poll(), pending.poll(), consumer);
+                }
+            }
+            while (!pending.isEmpty()) {
+                deliver(pendingFiles.poll(), pending.poll(), consumer);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Corpus loading interrupted.");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void deliver(File file, Future<List<String>> future, DocumentConsumer consumer)
+            throws IOException, InterruptedException {
+        List<String> tokens;
+        try {
+            tokens = future.get();
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof IOException)) {
+                throw new IllegalStateException("Failed to preprocess " + file.getName(), e.getCause());
+            }
+            System.out.println("⚠️ Could not read file: " + file.getName());
+            return;
+        }
+        consumer.accept(file, tokens);
+    }
+
+    private List<String> preprocessFile(File file) throws IOException {
+        return preprocessText(FileUtils.readFileToString(file, StandardCharsets.UTF_8));
+    }
+
+    /** Receives preprocessed corpus documents. */
+    @FunctionalInterface
+    public interface DocumentConsumer {
+        void accept(File file, List<String> tokens) throws IOException;
     }
 }
@@ -0,0 +1,133 @@
+package com.myorg.search;
+
+import java.util.*;
+
+/**
+ * ProximityBoost - Rescores the best documents of a query by how close its terms
+ * occur to each other, so a document where "كرة" is followed by "القدم" ranks
+ * above one mentioning both words paragraphs apart:
+ *
+ *   score' = score × (1 + weight × proximity)
+ *   proximity = Σ 1 / minimum distance of each pair of consecutive query terms, / (terms − 1)
+ *
+ * Proximity is 1 when every pair of consecutive query terms occurs side by
+ * side, and pairs with a term missing from the document count 0. Positions are
+ * only read for the window of best documents returned by the scorer, not for
+ * every match, so the final top K is taken from that window. Documents of
+ * segments without positions are left as they are.
+ */
+public class ProximityBoost {
+
+    /** Documents rescored per query, at least topK */
+    public static final int DEFAULT_WINDOW = 100;
+
+    private final double weight;
+    private final int window;
+
+    /**
+     * @param weight Boost of a document where consecutive query terms are adjacent, e.g. 0.5 for +50%
+     * @param window Number of best documents rescored
+     */
+    public ProximityBoost(double weight, int window) {
+        if (!(weight > 0.0) || Double.isInfinite(weight) || window < 1) {
+            throw new IllegalArgumentException("Proximity boost needs weight > 0 and window >= 1, got weight="
+                    + weight + ", window=" + window);
+        }
+        this.weight = weight;
+        this.window = window;
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    /** Number of documents to ask the scorer for */
+    public int windowFor(int topK) {
+        return Math.max(topK, window);
+    }
+
+    /**
+     * Boost the scores of the candidates by the proximity of the query terms.
+     *
+     * @param candidates Best documents of the query, by global document id
+     * @param termIds Distinct query terms found in the index, in query order
+     * @return The best topK documents after boosting, best first
+     */
+    public List<TopKCollector.ScoredDocument> rescore(List<TopKCollector.ScoredDocument> candidates,
+                                                      int[] termIds, IndexSnapshot snapshot, int topK) {
+        TopKCollector collector = new TopKCollector(topK);
+        if (termIds.length < 2) {
+            for (TopKCollector.ScoredDocument doc : candidates) collector.collect(doc.getDocId(), doc.getScore());
+            return collector.results();
+        }
+        // By document id, so the postings of every segment are read forward only
+        List<TopKCollector.ScoredDocument> byDocId = new ArrayList<>(candidates);
+        byDocId.sort(Comparator.comparingInt(TopKCollector.ScoredDocument::getDocId));
+
+        int n = termIds.length;
+        int segmentIndex = -1;
+        InvertedIndex.PostingList[] postings = new InvertedIndex.PostingList[n];
+        PositionIndex.PositionList[] positions = new PositionIndex.PositionList[n];
+        int[] cursors = new int[n];
+        for (TopKCollector.ScoredDocument doc : byDocId) {
+            int s = snapshot.segmentOf(doc.getDocId());
+            IndexSnapshot.Segment segment = snapshot.getSegments().get(s);
+            if (s != segmentIndex) {
+                segmentIndex = s;
+                for (int k = 0; k < n; k++) {
+                    int localId = segment.getLocalTermId(termIds[k]);
+                    postings[k] = localId >= 0 ? segment.getIndex().getPostings(localId) : null;
+                    positions[k] = localId >= 0 ? segment.getIndex().getPositions(localId) : null;
+                    cursors[k] = 0;
+                }
+            }
+            int docId = doc.getDocId() - snapshot.getDocBase(s);
+            double proximity = 0.0;
+            int[] previousPositions = null;
+            int previousCount = 0;
+            for (int k = 0; k < n; k++) {
+                // Each term has its own position list, so the previous term's array stays valid
+                int[] current = null;
+                int count = 0;
+                if (positions[k] != null) {
+                    cursors[k] = postings[k].advance(cursors[k], docId);
+                    if (cursors[k] < postings[k].size() && postings[k].getDocId(cursors[k]) == docId) {
+                        current = positions[k].getPositions(cursors[k]);
+                        count = positions[k].getCount(cursors[k]);
+                    }
+                }
+                if (current != null && previousPositions != null) {
+                    proximity += 1.0 / minimumDistance(previousPositions, previousCount, current, count);
+                }
+                previousPositions = current;
+                previousCount = count;
+            }
+            proximity /= n - 1;
+            collector.collect(doc.getDocId(), doc.getScore() * (1.0 + weight * proximity));
+        }
+        return collector.results();
+    }
+
+    /** Smallest distance between a position of one list and a position of the other, both ascending */
+    static int minimumDistance(int[] a, int aCount, int[] b, int bCount) {
+        int best = Integer.MAX_VALUE;
+        int i = 0;
+        int j = 0;
+        while (i < aCount && j < bCount) {
+            int distance = a[i] - b[j];
+            if (distance < 0) {
+                best = Math.min(best, -distance);
+                i++;
+            } else {
+                best = Math.min(best, distance);
+                j++;
+            }
+        }
+        return Math.max(best, 1);
+    }
+
+    @Override
+    public String toString() {
+        return "proximity boost ×" + weight + " over the best " + window;
+    }
+}
@@ -0,0 +1,236 @@
+package com.myorg.search;
+
+import java.util.*;
+
+/**
+ * QueryParser - Parses the Boolean syntax of a query into a BooleanQuery:
+ *
+ *   كرة القدم                 any of the words, ranked (no syntax: not a BooleanQuery)
+ *   "كرة القدم"               the phrase, see PhraseQuery; also «…» and “…”
+ *   +كرة -السلة               كرة required, السلة excluded, other words optional
+ *   كرة AND (القدم OR اليد)   AND binds tighter than OR, parentheses group
+ *   كرة AND NOT السلة         NOT excludes from the rest of an AND; NOT NOT x is x
+ *
+ * Words side by side without an operator are optional: a document must match
+ * at least one of them, or every required one when there are required parts.
+ * A quoted phrase standing on its own is required, as it was before the other
+ * operators existed. Words and phrases are preprocessed like the rest of the
+ * query, so a stopword on its own drops out of the query.
+ *
+ * Operators are the upper case English words, which the Arabic tokenizer would
+ * drop anyway. The parser is lenient: an unmatched parenthesis or an operator
+ * missing an operand is ignored rather than failing the search.
+ */
+public class QueryParser {
+
+    private static final String OPEN_QUOTES = "\"«“";
+    private static final String CLOSE_QUOTES = "\"»”";
+
+    private enum Type { WORD, PHRASE, REQUIRED, EXCLUDED, OPEN, CLOSE, AND, OR, NOT }
+
+    private static class Token {
+        final Type type;
+        final String text;
+
+        Token(Type type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+    }
+
+    private final Preprocessor preprocessor;
+    private final List<Token> tokens;
+    private final List<String> terms = new ArrayList<>();
+    private final List<PhraseQuery> phrases = new ArrayList<>();
+    private int position;
+    // NOT and '-' around the token being parsed: words under an odd number are negated and not scored
+    private int negations;
+
+    private QueryParser(Preprocessor preprocessor, List<Token> tokens) {
+        this.preprocessor = preprocessor;
+        this.tokens = tokens;
+    }
+
+    /**
+     * Parse a query.
+     *
+     * @return The query, or null if it uses no Boolean syntax and is a plain list of words
+     */
+    public static BooleanQuery parse(String query, Preprocessor preprocessor) {
+        List<Token> tokens = tokenize(query);
+        boolean plain = true;
+        for (Token token : tokens) {
+            plain &= token.type == Type.WORD;
+        }
+        if (plain) {
+            return null;
+        }
+        QueryParser parser = new QueryParser(preprocessor, tokens);
+        BooleanQuery.Node root = parser.parseClauses(false);
+        return new BooleanQuery(root, parser.terms, parser.phrases);
+    }
+
+    private static List<Token> tokenize(String query) {
+        List<Token> tokens = new ArrayList<>();
+        int n = query.length();
+        int i = 0;
+        while (i < n) {
+            char c = query.charAt(i);
+            int quote = OPEN_QUOTES.indexOf(c);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(new Token(c == '(' ? Type.OPEN : Type.CLOSE, null));
+                i++;
+            } else if (quote >= 0) {
+                int end = query.indexOf(CLOSE_QUOTES.charAt(quote), i + 1);
+                if (end < 0) end = n;
+                tokens.add(new Token(Type.PHRASE, query.substring(i + 1, end)));
+                i = end + 1;
+            } else if ((c == '+' || c == '-') && i + 1 < n && !Character.isWhitespace(query.charAt(i + 1))) {
+                tokens.add(new Token(c == '+' ? Type.REQUIRED : Type.EXCLUDED, null));
+                i++;
+            } else {
+                int start = i;
+                while (i < n && !Character.isWhitespace(query.charAt(i)) && query.charAt(i) != '('
+                        && query.charAt(i) != ')' && OPEN_QUOTES.indexOf(query.charAt(i)) < 0) {
+                    i++;
+                }
+                String word = query.substring(start, i);
+                switch (word) {
+                    case "AND": tokens.add(new Token(Type.AND, null)); break;
+                    case "OR": tokens.add(new Token(Type.OR, null)); break;
+                    case "NOT": tokens.add(new Token(Type.NOT, null)); break;
+                    default: tokens.add(new Token(Type.WORD, word));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private Type peek() {
+        return position < tokens.size() ? tokens.get(position).type : null;
+    }
+
+    /**
+     * Clauses up to the end of the query, or of the parentheses when nested:
+     * required, excluded and optional parts combined as described above.
+     */
+    private BooleanQuery.Node parseClauses(boolean nested) {
+        List<BooleanQuery.Node> required = new ArrayList<>();
+        List<BooleanQuery.Node> optional = new ArrayList<>();
+        List<BooleanQuery.Node> excluded = new ArrayList<>();
+        while (peek() != null) {
+            if (peek() == Type.CLOSE) {
+                if (nested) break;
+                position++;
+                continue;
+            }
+            Type modifier = peek() == Type.REQUIRED || peek() == Type.EXCLUDED ? tokens.get(position++).type : null;
+            if (modifier == Type.EXCLUDED) negations++;
+            int start = position;
+            BooleanQuery.Node clause = parseOr();
+            if (modifier == Type.EXCLUDED) negations--;
+            if (clause == null) {
+                continue;
+            }
+            boolean quoted = position == start + 1 && tokens.get(start).type == Type.PHRASE;
+            if (modifier == Type.EXCLUDED) excluded.add(clause);
+            else if (modifier == Type.REQUIRED || quoted) required.add(clause);
+            else optional.add(clause);
+        }
+
+        BooleanQuery.Node positive = !required.isEmpty() ? and(required) : optional.isEmpty() ? null : or(optional);
+        if (excluded.isEmpty()) {
+            return positive;
+        }
+        List<BooleanQuery.Node> children = new ArrayList<>();
+        if (positive != null) children.add(positive);
+        for (BooleanQuery.Node clause : excluded) children.add(not(clause));
+        return new BooleanQuery.And(children);
+    }
+
+    private BooleanQuery.Node parseOr() {
+        List<BooleanQuery.Node> operands = new ArrayList<>();
+        addOperand(operands, parseAnd());
+        while (peek() == Type.OR) {
+            position++;
+            addOperand(operands, parseAnd());
+        }
+        return operands.isEmpty() ? null : or(operands);
+    }
+
+    private BooleanQuery.Node parseAnd() {
+        List<BooleanQuery.Node> operands = new ArrayList<>();
+        addOperand(operands, parseNot());
+        while (peek() == Type.AND) {
+            position++;
+            addOperand(operands, parseNot());
+        }
+        return operands.isEmpty() ? null : and(operands);
+    }
+
+    private BooleanQuery.Node parseNot() {
+        if (peek() != Type.NOT) {
+            return parsePrimary();
+        }
+        position++;
+        negations++;
+        BooleanQuery.Node operand = parseNot();
+        negations--;
+        return operand == null ? null : not(operand);
+    }
+
+    private BooleanQuery.Node parsePrimary() {
+        Type type = peek();
+        if (type == null || type == Type.CLOSE) {
+            return null;
+        }
+        Token token = tokens.get(position++);
+        switch (type) {
+            case WORD:
+            case PHRASE:
+                return text(token.text);
+            case OPEN:
+                BooleanQuery.Node group = parseClauses(true);
+                if (peek() == Type.CLOSE) position++;
+                return group;
+            default:
+                // Operator or modifier without an operand
+                return null;
+        }
+    }
+
+    /** A word or quoted text: its stems as a term or a phrase, or null if none is left */
+    private BooleanQuery.Node text(String text) {
+        List<String> stems = preprocessor.preprocessText(text);
+        if (stems.isEmpty()) {
+            return null;
+        }
+        if (negations % 2 == 0) terms.addAll(stems);
+        if (stems.size() == 1) {
+            return new BooleanQuery.Term(stems.get(0));
+        }
+        PhraseQuery phrase = new PhraseQuery(stems);
+        if (negations % 2 == 0) phrases.add(phrase);
+        return new BooleanQuery.Phrase(phrase);
+    }
+
+    private static void addOperand(List<BooleanQuery.Node> operands, BooleanQuery.Node operand) {
+        if (operand != null) operands.add(operand);
+    }
+
+    /** NOT of an operand: two NOTs cancel out */
+    private static BooleanQuery.Node not(BooleanQuery.Node operand) {
+        return operand instanceof BooleanQuery.Not ? ((BooleanQuery.Not) operand).getChild()
+                : new BooleanQuery.Not(operand);
+    }
+
+    private static BooleanQuery.Node and(List<BooleanQuery.Node> operands) {
+        return operands.size() == 1 ? operands.get(0) : new BooleanQuery.And(operands);
+    }
+
+    private static BooleanQuery.Node or(List<BooleanQuery.Node> operands) {
+        return operands.size() == 1 ? operands.get(0) : new BooleanQuery.Or(operands);
+    }
+}
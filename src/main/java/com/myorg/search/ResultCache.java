@@ -0,0 +1,153 @@
+package com.myorg.search;
+
+import java.util.*;
+
+/**
+ * ResultCache - Bounded, thread-safe cache of search results, keyed on the
+ * stemmed query terms, the phrases and operators restricting the results,
+ * topK and the ranking model. Queries that differ only in word order,
+ * inflection or stopwords preprocess to the same terms and share an entry.
+ *
+ * Every entry remembers the index snapshot it was computed on and only that
+ * snapshot can hit it, so once a new snapshot is searched no stale result is
+ * ever returned, even before invalidate() has emptied the cache. Entries are
+ * kept in a SegmentedLruCache; hits and misses are counted.
+ */
+public class ResultCache {
+
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final SegmentedLruCache<Key, Entry> cache;
+
+    /**
+     * @param capacity Maximum number of cached queries; least recently used queries are evicted
+     */
+    public ResultCache(int capacity) {
+        cache = new SegmentedLruCache<>(capacity);
+    }
+
+    /**
+     * Cache key of a query: its terms sorted, so the multiset of terms counts
+     * but not their order, the number of results and the ranking model.
+     *
+     * @param model Name of the scorer, with its parameters
+     */
+    public static Key keyOf(List<String> queryTerms, int topK, String model) {
+        return keyOf(queryTerms, null, topK, model);
+    }
+
+    /**
+     * Cache key of a query with phrases or operators: their canonical form counts
+     * as written, so reordering them may miss the cache but never hits a wrong entry.
+     *
+     * @param booleanQuery Phrases and operators of the query, or null
+     */
+    public static Key keyOf(List<String> queryTerms, BooleanQuery booleanQuery, int topK, String model) {
+        String[] terms = queryTerms.toArray(new String[0]);
+        Arrays.sort(terms);
+        return new Key(terms, booleanQuery == null ? "" : booleanQuery.toString(), topK, model);
+    }
+
+    /**
+     * Results cached for the key on this snapshot, or null.
+     */
+    public Entry get(IndexSnapshot snapshot, Key key) {
+        return cache.get(key, entry -> entry.snapshot == snapshot);
+    }
+
+    /**
+     * Cache the results of a query computed on a snapshot.
+     *
+     * @param matchedTerms Distinct query terms found in the index, reported again on hits
+     */
+    public void put(IndexSnapshot snapshot, Key key, List<SearchEngine.SearchResult> results, int matchedTerms) {
+        cache.put(key, new Entry(snapshot, Collections.unmodifiableList(new ArrayList<>(results)), matchedTerms));
+    }
+
+    /**
+     * Drop every entry, e.g. once a new index snapshot is in use. Entries of the
+     * old snapshot could not hit anymore anyway; this frees their memory.
+     */
+    public void invalidate() {
+        cache.clear();
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public double getHitRate() {
+        return cache.getHitRate();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d queries, %d hits, %d misses (%.1f%% hit rate)",
+                size(), getHits(), getMisses(), getHitRate() * 100);
+    }
+
+    /**
+     * Key - Sorted stemmed terms of a query, its filter, topK and model.
+     */
+    public static class Key {
+        private final String[] terms;
+        private final String filter;
+        private final int topK;
+        private final String model;
+        private final int hash;
+
+        private Key(String[] terms, String filter, int topK, String model) {
+            this.terms = terms;
+            this.filter = filter;
+            this.topK = topK;
+            this.model = model;
+            this.hash = 31 * (31 * (31 * Arrays.hashCode(terms) + filter.hashCode()) + topK) + model.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return topK == other.topK && model.equals(other.model) && filter.equals(other.filter)
+                    && Arrays.equals(terms, other.terms);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Entry - Results of a query on one snapshot. The results are shared by every
+     * hit, so they must not be modified.
+     */
+    public static class Entry {
+        private final IndexSnapshot snapshot;
+        private final List<SearchEngine.SearchResult> results;
+        private final int matchedTerms;
+
+        private Entry(IndexSnapshot snapshot, List<SearchEngine.SearchResult> results, int matchedTerms) {
+            this.snapshot = snapshot;
+            this.results = results;
+            this.matchedTerms = matchedTerms;
+        }
+
+        public List<SearchEngine.SearchResult> getResults() {
+            return results;
+        }
+
+        public int getMatchedTerms() {
+            return matchedTerms;
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.myorg.search;
+
+/**
+ * ScoreKernel - Inner loops of term-at-a-time scoring over dense blocks, one
+ * element per document: accumulating the counts of a term into the scores,
+ * then scaling the scores by the document normalization factors.
+ *
+ * best() picks the Vector API (SIMD) kernel when the JVM runs with
+ * --add-modules jdk.incubator.vector and the CPU has vector registers, and
+ * the scalar loops otherwise. Both compute every element with the same double
+ * multiplies and adds, so they give bit-identical scores.
+ */
+public abstract class ScoreKernel {
+
+    private static final ScoreKernel SCALAR = new Scalar();
+    private static final ScoreKernel BEST = select();
+
+    /** Fastest kernel available on this JVM; -Dsearch.scalarKernel=true forces the scalar one */
+    public static ScoreKernel best() {
+        return BEST;
+    }
+
+    public static ScoreKernel scalar() {
+        return SCALAR;
+    }
+
+    /**
+     * accumulators[i] += multiplier × counts[offset + i] for every accumulator
+     */
+    public abstract void accumulate(double[] accumulators, float[] counts, int offset, double multiplier);
+
+    /**
+     * values[i] *= factors[offset + i] for every value
+     */
+    public abstract void multiply(double[] values, double[] factors, int offset);
+
+    public abstract String getName();
+
+    @Override
+    public String toString() {
+        return getName();
+    }
+
+    private static ScoreKernel select() {
+        if (Boolean.getBoolean("search.scalarKernel")
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return SCALAR;
+        }
+        // Loaded by name, so this class still loads when the incubator module is missing
+        try {
+            Class<?> vector = Class.forName("com.myorg.search.VectorScoreKernel");
+            if (!(Boolean) vector.getDeclaredMethod("isSupported").invoke(null)) {
+                return SCALAR;
+            }
+            return (ScoreKernel) vector.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return SCALAR;
+        }
+    }
+
+    /**
+     * Scalar - One document at a time.
+     */
+    private static class Scalar extends ScoreKernel {
+        @Override
+        public void accumulate(double[] accumulators, float[] counts, int offset, double multiplier) {
+            for (int i = 0; i < accumulators.length; i++) {
+                accumulators[i] += multiplier * counts[offset + i];
+            }
+        }
+
+        @Override
+        public void multiply(double[] values, double[] factors, int offset) {
+            for (int i = 0; i < values.length; i++) {
+                values[i] *= factors[offset + i];
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "scalar";
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.myorg.search;
+
+import java.util.List;
+
+/**
+ * Scorer - A ranking model: how the terms of a query are weighted and how
+ * documents are scored against them, from the term counts, document lengths
+ * and collection statistics stored in the index. CosineSimilarity ranks by
+ * TF-IDF cosine, Bm25 by Okapi BM25; SearchEngine takes the scorer per query.
+ */
+public interface Scorer {
+
+    /**
+     * Name of the model and its parameters: queries ranked by scorers with the
+     * same name share result cache entries.
+     */
+    String getName();
+
+    /**
+     * Weights of the query terms, the query vector passed to rankDocuments.
+     * Terms weighted 0 are left out.
+     *
+     * @param termCounts Occurrences of every query term found in the index, over the term ids of the snapshot
+     * @param queryLength Number of query terms after preprocessing, those outside the index included
+     * @param snapshot Segments of the index
+     */
+    SparseVector queryVector(SparseVector termCounts, int queryLength, IndexSnapshot snapshot);
+
+    /**
+     * Rank documents against a query vector built by queryVector.
+     *
+     * @param queryVector Query vector, over the term ids of the snapshot
+     * @param snapshot Segments of the index
+     * @param topK Number of top results to return
+     * @return Top documents, by global document id, sorted by score descending
+     */
+    default List<TopKCollector.ScoredDocument> rankDocuments(SparseVector queryVector, IndexSnapshot snapshot,
+                                                             int topK) {
+        return rankDocuments(queryVector, snapshot, null, topK);
+    }
+
+    /**
+     * Rank the documents matching a BooleanQuery against a query vector. The
+     * DocIdIterators of the query select the candidates: only documents they
+     * return are scored, with the same scores as without the filter.
+     *
+     * @param filter Query the documents must match, or null to rank every document with a query term
+     */
+    List<TopKCollector.ScoredDocument> rankDocuments(SparseVector queryVector, IndexSnapshot snapshot,
+                                                     BooleanQuery filter, int topK);
+}
@@ -4,243 +4,318 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * SearchEngine - Main search interface for Arabic documents.
- * Loads TF-IDF matrix, processes queries, and returns ranked results using cosine similarity.
+ * Opens the segments of the TF-IDF index, processes queries, and returns ranked results using cosine similarity,
+ * or another Scorer such as BM25 chosen per query.
+ * Quoted phrases and the AND, OR, NOT, +required and -excluded operators of QueryParser restrict
+ * the results to the documents matching them, see BooleanQuery,
+ * and a ProximityBoost can favor documents where the query terms are close together.
+ * The index can be reloaded while searches run, see reload().
  */
 public class SearchEngine {
 
-    private static final String MATRIX_PATH = "src/main/resources/output/matrix.csv";
+    private static final String INDEX_PATH = TfIdfBuilder.INDEX_PATH;
     
-    private final Map<String, Map<String, Double>> documentVectors;
-    private final Map<String, Double> idfScores;
-    private final Set<String> vocabulary;
+    private final Path indexPath;
+    private volatile IndexSnapshot snapshot;
     private final Preprocessor preprocessor;
-    private final CosineSimilarity cosineSimilarity;
+    private volatile CosineSimilarity cosineSimilarity;
+    private volatile ProximityBoost proximityBoost;
+    private final ResultCache resultCache;
+    private int reloadCount;
 
     /**
-     * Initialize the search engine by loading the TF-IDF matrix.
+     * Initialize the search engine by memory-mapping the index segments.
      */
     public SearchEngine() throws IOException {
+        this(null, Paths.get(INDEX_PATH));
+    }
+
+    /**
+     * @param preprocessor Preprocessor for queries, or null to create the default one
+     * @param indexPath Index folder written by TfIdfBuilder
+     */
+    public SearchEngine(Preprocessor preprocessor, Path indexPath) throws IOException {
+        this(preprocessor, indexPath, ResultCache.DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param preprocessor Preprocessor for queries, or null to create the default one
+     * @param indexPath Index folder written by TfIdfBuilder
+     * @param resultCacheCapacity Queries whose results are cached, 0 for no result cache
+     */
+    public SearchEngine(Preprocessor preprocessor, Path indexPath, int resultCacheCapacity) throws IOException {
         System.out.println("🔍 Initializing Arabic Search Engine...");
         
-        this.preprocessor = new Preprocessor();
+        this.preprocessor = preprocessor != null ? preprocessor : new Preprocessor();
         this.cosineSimilarity = new CosineSimilarity();
-        this.documentVectors = new LinkedHashMap<>();
-        this.idfScores = new HashMap<>();
-        this.vocabulary = new LinkedHashSet<>();
+        this.resultCache = resultCacheCapacity > 0 ? new ResultCache(resultCacheCapacity) : null;
         
-        loadMatrix(MATRIX_PATH);
+        System.out.println("📊 Opening search index: " + indexPath);
+        this.indexPath = indexPath;
+        this.snapshot = IndexSnapshot.open(indexPath);
         
         System.out.println("✅ Search Engine ready!");
-        System.out.println("   📚 Documents indexed: " + documentVectors.size());
-        System.out.println("   📖 Vocabulary size: " + vocabulary.size());
+        System.out.println("   📚 Documents indexed: " + snapshot.getLiveDocumentCount());
+        System.out.println("   🧩 Segments: " + snapshot.getSegments().size());
+        System.out.println("   📖 Vocabulary size: " + snapshot.getTermCount());
+        System.out.println("   🗂️ Postings: " + snapshot.getPostingCount());
+        System.out.println("   📍 Positions: " + (snapshot.hasPositions() ? "yes" : "no, phrases match as all their terms"));
+        System.out.println("   ⚡ Scoring kernel: " + ScoreKernel.best());
     }
 
     /**
-     * Load TF-IDF matrix from CSV file.
-     * Format: Term, doc1, doc2, ..., docN
+     * Search for documents matching the query.
+     * 
+     * @param query Raw Arabic query text
+     * @param topK Number of top results to return
+     * @return List of search results with document names and scores
      */
-    private void loadMatrix(String path) throws IOException {
-        System.out.println("📊 Loading TF-IDF matrix from: " + path);
-        
-        List<String> lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
-        
-        if (lines.isEmpty()) {
-            throw new IOException("❌ Matrix file is empty!");
-        }
-
-        // Parse header (document names)
-        String[] header = lines.get(0).split(",");
-        List<String> docNames = new ArrayList<>();
-        
-        for (int i = 1; i < header.length; i++) {
-            String docName = extractDocumentName(header[i].trim());
-            docNames.add(docName);
-            documentVectors.put(docName, new HashMap<>());
-        }
+    public List<SearchResult> search(String query, int topK) {
+        return searchWithStats(query, topK).getResults();
+    }
 
-        // Parse TF-IDF values
-        for (int lineIdx = 1; lineIdx < lines.size(); lineIdx++) {
-            String line = lines.get(lineIdx);
-            String[] parts = line.split(",");
-            
-            if (parts.length < 2) continue;
-            
-            String term = parts[0].trim();
-            vocabulary.add(term);
-            
-            // Store TF-IDF for each document
-            for (int docIdx = 0; docIdx < docNames.size() && (docIdx + 1) < parts.length; docIdx++) {
-                try {
-                    double tfidf = Double.parseDouble(parts[docIdx + 1].trim());
-                    if (tfidf > 0.0) {
-                        documentVectors.get(docNames.get(docIdx)).put(term, tfidf);
-                    }
-                } catch (NumberFormatException e) {
-                    // Skip invalid values
-                }
-            }
-        }
-        
-        // Compute IDF scores from the loaded TF-IDF matrix
-        computeIDFFromMatrix();
+    /**
+     * Search for documents matching the query, reporting where the time went.
+     * Safe to call from many threads at once: the index snapshot is immutable,
+     * the stem and result caches are thread-safe and every thread gets its own
+     * stemmer. A search runs entirely on the snapshot current when it started,
+     * even if the index is reloaded meanwhile. Nothing is printed; see
+     * interactiveSearch for console output.
+     *
+     * @param query Raw Arabic query text
+     * @param topK Number of top results to return
+     */
+    public SearchResponse searchWithStats(String query, int topK) {
+        return searchWithStats(query, topK, null);
     }
 
     /**
-     * Extract clean document name from full path.
-     * Example: "src\main\resources\Corpus\Hespres\مجتمع\txt4.txt" → "txt4.txt"
+     * @param scorer Ranking model, or null for cosine similarity
      */
-    private String extractDocumentName(String fullPath) {
-        return Paths.get(fullPath).getFileName().toString();
+    public SearchResponse searchWithStats(String query, int topK, Scorer scorer) {
+        return search(query, topK, scorer, 0L);
     }
 
     /**
-     * Compute IDF scores from the loaded matrix.
-     * IDF(term) = log(N / df) where df is the number of documents containing the term.
+     * @param scorer Ranking model, or null for cosine similarity
+     * @param queueNanos Time the search waited in a SearchExecutor queue
      */
-    private void computeIDFFromMatrix() {
-        int N = documentVectors.size();
-        
-        for (String term : vocabulary) {
-            int df = 0;
-            for (Map<String, Double> docVector : documentVectors.values()) {
-                if (docVector.containsKey(term)) {
-                    df++;
-                }
-            }
-            idfScores.put(term, Math.log((double) N / (1 + df)));
+    SearchResponse search(String query, int topK, Scorer scorer, long queueNanos) {
+        if (scorer == null) {
+            scorer = cosineSimilarity;
+        }
+        IndexSnapshot snapshot = acquireSnapshot();
+        try {
+            return search(snapshot, query, topK, scorer, queueNanos);
+        } finally {
+            snapshot.release();
         }
     }
 
     /**
-     * Search for documents matching the query.
-     * 
-     * @param query Raw Arabic query text
-     * @param topK Number of top results to return
-     * @return List of search results with document names and scores
+     * The current snapshot, with a reference taken that the caller must release.
      */
-    public List<SearchResult> search(String query, int topK) {
-        System.out.println("\n🔎 Processing query: " + query);
-        
-        // Step 1: Preprocess query (tokenize, normalize, stem)
-        List<String> queryTerms = preprocessor.preprocessText(query);
-        
-        if (queryTerms.isEmpty()) {
-            System.out.println("⚠️ Query resulted in no valid terms after preprocessing.");
-            return new ArrayList<>();
+    private IndexSnapshot acquireSnapshot() {
+        while (true) {
+            IndexSnapshot current = snapshot;
+            if (current.acquire()) {
+                return current;
+            }
+            // Released by a reload after it was read: the field already holds its successor
         }
-        
-        System.out.println("   ✓ Query terms after preprocessing: " + queryTerms);
+    }
 
-        // Step 2: Build query TF-IDF vector
-        Map<String, Double> queryVector = buildQueryVector(queryTerms);
-        
-        if (queryVector.isEmpty()) {
-            System.out.println("⚠️ Query contains no terms in the vocabulary.");
-            return new ArrayList<>();
+    private SearchResponse search(IndexSnapshot snapshot, String query, int topK, Scorer scorer, long queueNanos) {
+        long start = System.nanoTime();
+
+        // Step 1: Preprocess query (tokenize, normalize, stem), parsing phrases and operators if it has any
+        BooleanQuery booleanQuery = QueryParser.parse(query, preprocessor);
+        List<String> queryTerms = booleanQuery != null ? booleanQuery.getTerms() : preprocessor.preprocessText(query);
+        long preprocessed = System.nanoTime();
+
+        // Repeated queries: same stemmed terms, filter and model, same results while the snapshot is the same
+        ResultCache.Key cacheKey = null;
+        if (resultCache != null) {
+            cacheKey = ResultCache.keyOf(queryTerms, booleanQuery, topK, scorer.getName());
+            ResultCache.Entry cached = resultCache.get(snapshot, cacheKey);
+            if (cached != null) {
+                QueryStats stats = new QueryStats(queryTerms, booleanQuery, cached.getMatchedTerms(),
+                        snapshot.getSegments().size(), queueNanos, preprocessed - start,
+                        System.nanoTime() - preprocessed, 0L, true);
+                return new SearchResponse(cached.getResults(), stats);
+            }
         }
 
-        // Step 3: Compute cosine similarity with all documents
-        List<Map.Entry<String, Double>> rankedDocs = 
-            cosineSimilarity.rankDocuments(queryVector, documentVectors, topK);
+        // Step 2: Build query vector (TF-IDF for cosine similarity)
+        SparseVector queryVector = buildQueryVector(snapshot, queryTerms, scorer);
+
+        // Step 3: Score documents sharing a query term, among those matching the phrases and operators
+        ProximityBoost proximityBoost = this.proximityBoost;
+        List<TopKCollector.ScoredDocument> rankedDocs = Collections.emptyList();
+        if (!queryVector.isEmpty()) {
+            int[] termIds = proximityBoost != null ? termIdsInOrder(snapshot, queryTerms) : null;
+            if (termIds == null || termIds.length < 2) {
+                rankedDocs = scorer.rankDocuments(queryVector, snapshot, booleanQuery, topK);
+            } else {
+                rankedDocs = scorer.rankDocuments(queryVector, snapshot, booleanQuery, proximityBoost.windowFor(topK));
+                rankedDocs = proximityBoost.rescore(rankedDocs, termIds, snapshot, topK);
+            }
+        }
+        long ranked = System.nanoTime();
 
-        // Step 4: Convert to SearchResult objects
+        // Step 4: Convert to SearchResult objects, with path and preview from the document store
         List<SearchResult> results = new ArrayList<>();
-        for (Map.Entry<String, Double> entry : rankedDocs) {
-            if (entry.getValue() > 0.0) {
-                SearchResult result = new SearchResult(entry.getKey(), entry.getValue());
-                // Load file path and content
-                loadFileDetails(result);
+        for (TopKCollector.ScoredDocument doc : rankedDocs) {
+            if (doc.getScore() > 0.0) {
+                SearchResult result = new SearchResult(snapshot.getDocumentPath(doc.getDocId()), doc.getScore());
+                result.setSource(snapshot.getDocumentSource(doc.getDocId()));
+                DocumentStore.StoredDocument stored = snapshot.getStoredDocument(doc.getDocId());
+                result.setFilePath(stored.getPath());
+                result.setCategory(stored.getCategory());
+                result.setContent(stored.getPreview());
                 results.add(result);
             }
         }
+        long hydrated = System.nanoTime();
 
-        return results;
+        // Results of a replaced snapshot could never hit again, they would only keep it in memory
+        if (resultCache != null && !snapshot.isRetired()) {
+            resultCache.put(snapshot, cacheKey, results, queryVector.size());
+        }
+        QueryStats stats = new QueryStats(queryTerms, booleanQuery, queryVector.size(), snapshot.getSegments().size(),
+                queueNanos, preprocessed - start, ranked - preprocessed, hydrated - ranked, false);
+        return new SearchResponse(results, stats);
     }
 
     /**
-     * Load file path and content for a search result.
+     * Build the query vector: counts of the query terms, weighted by the scorer
+     * (TF-IDF(term) = TF(term in query) × IDF(term from corpus) for cosine similarity).
      */
-    private void loadFileDetails(SearchResult result) {
-        try {
-            // Find the file in the corpus
-            String fileName = result.getDocumentName();
-            java.io.File corpusDir = new java.io.File("src/main/resources/Corpus");
-            java.io.File foundFile = findFile(corpusDir, fileName);
-            
-            if (foundFile != null) {
-                // Set absolute path
-                result.setFilePath(foundFile.getAbsolutePath());
-                
-                // Read content (limit to first 500 characters for preview)
-                String content = org.apache.commons.io.FileUtils.readFileToString(foundFile, 
-                    java.nio.charset.StandardCharsets.UTF_8);
-                
-                // Limit content length for display
-                if (content.length() > 500) {
-                    content = content.substring(0, 500) + "...";
-                }
-                result.setContent(content);
+    private SparseVector buildQueryVector(IndexSnapshot snapshot, List<String> queryTerms, Scorer scorer) {
+        // Step 1: Compute term frequency in query, skipping terms outside the corpus vocabulary
+        SparseVector.Builder counts = new SparseVector.Builder();
+        for (String term : queryTerms) {
+            int termId = snapshot.getTermId(term);
+            if (termId >= 0) {
+                counts.add(termId, 1.0f);
             }
-        } catch (Exception e) {
-            result.setFilePath("Path not found");
-            result.setContent("Content not available");
         }
+
+        // Step 2: Weight each term as the ranking model needs
+        return scorer.queryVector(counts.build(), queryTerms.size(), snapshot);
+    }
+
+    /** Distinct ids of the query terms found in the index, in query order */
+    private static int[] termIdsInOrder(IndexSnapshot snapshot, List<String> queryTerms) {
+        LinkedHashSet<Integer> termIds = new LinkedHashSet<>();
+        for (String term : queryTerms) {
+            int termId = snapshot.getTermId(term);
+            if (termId >= 0) termIds.add(termId);
+        }
+        return termIds.stream().mapToInt(Integer::intValue).toArray();
     }
 
     /**
-     * Recursively find a file by name in a directory.
+     * Open the index folder again and switch to it, e.g. after TfIdfBuilder updated
+     * or rebuilt the index, without restarting: the preprocessor, stem cache and
+     * scoring settings are kept, and segments whose files did not change are shared
+     * with their caches. New searches use the new snapshot at once; searches in
+     * progress finish on the previous one, which is released after the last of
+     * them. Cached results are dropped. If opening fails, the current snapshot stays.
      */
-    private java.io.File findFile(java.io.File directory, String fileName) {
-        if (directory.isDirectory()) {
-            java.io.File[] files = directory.listFiles();
-            if (files != null) {
-                for (java.io.File file : files) {
-                    if (file.isFile() && file.getName().equals(fileName)) {
-                        return file;
-                    } else if (file.isDirectory()) {
-                        java.io.File found = findFile(file, fileName);
-                        if (found != null) return found;
-                    }
-                }
-            }
+    public synchronized void reload() throws IOException {
+        long start = System.nanoTime();
+        IndexSnapshot previous = snapshot;
+        IndexSnapshot next = IndexSnapshot.open(indexPath, previous);
+        snapshot = next;
+        if (resultCache != null) {
+            resultCache.invalidate();
         }
-        return null;
+        previous.retire(next);
+        reloadCount++;
+        System.out.printf("🔄 Index reloaded in %.1f ms: %d documents, %d segments (%d unchanged), %d terms%n",
+                (System.nanoTime() - start) / 1e6, next.getLiveDocumentCount(), next.getSegments().size(),
+                next.countSharedSegments(previous), next.getTermCount());
     }
 
     /**
-     * Build TF-IDF vector for the query.
-     * TF-IDF(term) = TF(term in query) × IDF(term from corpus)
+     * Reload the index if its manifest was saved since the current snapshot was
+     * opened, i.e. if a build, update or merge committed since.
+     *
+     * @return Whether the index was reloaded
      */
-    private Map<String, Double> buildQueryVector(List<String> queryTerms) {
-        Map<String, Double> queryVector = new HashMap<>();
-        
-        // Step 1: Compute term frequency in query
-        Map<String, Integer> termFreq = new HashMap<>();
-        for (String term : queryTerms) {
-            termFreq.put(term, termFreq.getOrDefault(term, 0) + 1);
+    public synchronized boolean reloadIfChanged() throws IOException {
+        if (!snapshot.isStale(indexPath)) {
+            return false;
         }
-        
-        // Step 2: Compute TF-IDF for each term
-        int totalTerms = queryTerms.size();
-        for (Map.Entry<String, Integer> entry : termFreq.entrySet()) {
-            String term = entry.getKey();
-            
-            // Only include terms that exist in the corpus vocabulary
-            if (vocabulary.contains(term)) {
-                double tf = (double) entry.getValue() / totalTerms;
-                double idf = idfScores.getOrDefault(term, 0.0);
-                double tfidf = tf * idf;
-                
-                if (tfidf > 0.0) {
-                    queryVector.put(term, tfidf);
-                }
-            }
+        reload();
+        return true;
+    }
+
+    /**
+     * Snapshot new searches run on, for statistics. It may be replaced at any
+     * time; to search it, take a reference with acquire().
+     */
+    public IndexSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /** Number of times the index was reloaded since the engine started */
+    public synchronized int getReloadCount() {
+        return reloadCount;
+    }
+
+    /**
+     * Rank queries whose terms have at least parallelThreshold postings on a
+     * fork/join pool, splitting the documents into partitions. Pays off on many
+     * cores when queries are few but broad; when every core is already busy with
+     * other queries, it only adds overhead.
+     *
+     * @param pool Pool ranking the partitions, or null to rank every query on its own thread
+     * @param parallelThreshold Postings of the query terms from which a query is ranked in parallel
+     */
+    public void setParallelScoring(ForkJoinPool pool, long parallelThreshold) {
+        this.cosineSimilarity = new CosineSimilarity(pool, parallelThreshold);
+    }
+
+    /**
+     * Rescore the best documents of every query by the proximity of its terms,
+     * on segments built with positions. Cached results are dropped.
+     *
+     * @param proximityBoost Boost to apply, or null for none
+     */
+    public void setProximityBoost(ProximityBoost proximityBoost) {
+        this.proximityBoost = proximityBoost;
+        if (resultCache != null) {
+            resultCache.invalidate();
         }
-        
-        return queryVector;
+    }
+
+    /**
+     * Ranking model by name, e.g. from a query parameter.
+     *
+     * @param model "cosine", or "bm25" with k1 and b (null for the defaults)
+     * @throws IllegalArgumentException If the model is unknown or k1 or b out of range
+     */
+    public Scorer getScorer(String model, Double k1, Double b) {
+        if (model == null || model.equals("cosine")) {
+            return cosineSimilarity;
+        }
+        if (model.equals("bm25")) {
+            return new Bm25(k1 != null ? k1 : Bm25.DEFAULT_K1, b != null ? b : Bm25.DEFAULT_B);
+        }
+        throw new IllegalArgumentException("Unknown ranking model: " + model + " (cosine or bm25)");
+    }
+
+    /**
+     * Cache of recent query results, or null if caching is disabled.
+     */
+    public ResultCache getResultCache() {
+        return resultCache;
     }
 
     /**
@@ -267,14 +342,32 @@ public class SearchEngine {
                 }
 
                 // Search and display results
-                List<SearchResult> results = search(query, 5);
-                displayResults(results);
+                SearchResponse response = searchWithStats(query, 5);
+                displayResponse(query, response);
             }
         } catch (Exception e) {
             System.err.println("❌ Error in interactive mode: " + e.getMessage());
         }
     }
 
+    /**
+     * Display the query terms, results and timing of a search.
+     */
+    private void displayResponse(String query, SearchResponse response) {
+        QueryStats stats = response.getStats();
+        System.out.println("\n🔎 Processing query: " + query);
+        if (stats.getQueryTerms().isEmpty()) {
+            System.out.println("⚠️ Query resulted in no valid terms after preprocessing.");
+        } else {
+            System.out.println("   ✓ Query terms after preprocessing: " + stats.getQueryTerms());
+            if (stats.getMatchedTerms() == 0) {
+                System.out.println("⚠️ Query contains no terms in the vocabulary.");
+            }
+        }
+        displayResults(response.getResults());
+        System.out.println("   " + stats);
+    }
+
     /**
      * Display search results in a formatted way.
      */
@@ -300,9 +393,12 @@ public class SearchEngine {
      * SearchResult - Represents a single search result.
      */
     public static class SearchResult {
+        // Path relative to the corpus, e.g. "Hespres/رياضة/file4.txt": unique per document
         private final String documentName;
         private final double score;
         private String filePath;
+        private String source;
+        private String category;
         private String content;
 
         public SearchResult(String documentName, double score) {
@@ -326,6 +422,22 @@ public class SearchEngine {
             this.filePath = filePath;
         }
 
+        public String getSource() {
+            return source;
+        }
+
+        public void setSource(String source) {
+            this.source = source;
+        }
+
+        public String getCategory() {
+            return category;
+        }
+
+        public void setCategory(String category) {
+            this.category = category;
+        }
+
         public String getContent() {
             return content;
         }
@@ -340,6 +452,117 @@ public class SearchEngine {
         }
     }
 
+    /**
+     * SearchResponse - Results of one search and its statistics.
+     */
+    public static class SearchResponse {
+        private final List<SearchResult> results;
+        private final QueryStats stats;
+
+        public SearchResponse(List<SearchResult> results, QueryStats stats) {
+            this.results = results;
+            this.stats = stats;
+        }
+
+        public List<SearchResult> getResults() {
+            return results;
+        }
+
+        public QueryStats getStats() {
+            return stats;
+        }
+    }
+
+    /**
+     * QueryStats - Terms and timing of one search, per step.
+     */
+    public static class QueryStats {
+        private final List<String> queryTerms;
+        private final BooleanQuery booleanQuery;
+        private final int matchedTerms;
+        private final int segments;
+        private final long queueNanos;
+        private final long preprocessNanos;
+        private final long rankNanos;
+        private final long hydrateNanos;
+        private final boolean cached;
+
+        public QueryStats(List<String> queryTerms, BooleanQuery booleanQuery, int matchedTerms, int segments,
+                          long queueNanos, long preprocessNanos, long rankNanos, long hydrateNanos, boolean cached) {
+            this.queryTerms = queryTerms;
+            this.booleanQuery = booleanQuery;
+            this.matchedTerms = matchedTerms;
+            this.segments = segments;
+            this.queueNanos = queueNanos;
+            this.preprocessNanos = preprocessNanos;
+            this.rankNanos = rankNanos;
+            this.hydrateNanos = hydrateNanos;
+            this.cached = cached;
+        }
+
+        /** Query terms after preprocessing, negated ones excluded */
+        public List<String> getQueryTerms() {
+            return queryTerms;
+        }
+
+        /** Phrases and operators of the query, or null for a plain list of words */
+        public BooleanQuery getBooleanQuery() {
+            return booleanQuery;
+        }
+
+        /** Quoted phrases of the query, after preprocessing, negated ones excluded */
+        public List<PhraseQuery> getPhrases() {
+            return booleanQuery == null ? Collections.emptyList() : booleanQuery.getPhrases();
+        }
+
+        /** Distinct query terms found in the index */
+        public int getMatchedTerms() {
+            return matchedTerms;
+        }
+
+        /** Index segments searched */
+        public int getSegments() {
+            return segments;
+        }
+
+        /** Time spent waiting for a SearchExecutor thread */
+        public long getQueueNanos() {
+            return queueNanos;
+        }
+
+        public long getPreprocessNanos() {
+            return preprocessNanos;
+        }
+
+        public long getRankNanos() {
+            return rankNanos;
+        }
+
+        /** Time spent reading paths and previews of the results */
+        public long getHydrateNanos() {
+            return hydrateNanos;
+        }
+
+        /** Whether the results came from the result cache; rankNanos is then the lookup time */
+        public boolean isCached() {
+            return cached;
+        }
+
+        /** Time from submission to results, queueing included */
+        public long getTotalNanos() {
+            return queueNanos + preprocessNanos + rankNanos + hydrateNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("⏱️ %.2f ms (queue %.2f, preprocess %.2f, rank %.2f, hydrate %.2f), "
+                            + "%d/%d terms matched, %s%d segments%s",
+                    getTotalNanos() / 1e6, queueNanos / 1e6, preprocessNanos / 1e6, rankNanos / 1e6,
+                    hydrateNanos / 1e6, matchedTerms, new HashSet<>(queryTerms).size(),
+                    booleanQuery == null ? "" : "filter " + booleanQuery + ", ", segments, cached ? ", cached" : "");
+        }
+    }
+
     /**
      * Main method for testing the search engine.
      */
@@ -352,8 +575,7 @@ public class SearchEngine {
             System.out.println("Example Search: الاقتصاد المغربي");
             System.out.println("=".repeat(60));
             
-            List<SearchResult> results = engine.search("الاقتصاد المغربي", 5);
-            engine.displayResults(results);
+            engine.displayResponse("الاقتصاد المغربي", engine.searchWithStats("الاقتصاد المغربي", 5));
             
             // Interactive mode
             engine.interactiveSearch();
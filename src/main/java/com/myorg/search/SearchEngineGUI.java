@@ -12,13 +12,14 @@ import javafx.stage.Stage;
 import javafx.stage.Modality;
 import java.io.File;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Professional Card-Based GUI for Arabic Search Engine
  */
 public class SearchEngineGUI extends Application {
 
-    private SearchEngine searchEngine;
+    private volatile SearchExecutor searchExecutor;
     private TextField searchField;
     private VBox resultsContainer;
     private Label statusLabel;
@@ -39,16 +40,16 @@ public class SearchEngineGUI extends Application {
         // Create UI
         VBox root = createUI();
         
-        // Check if matrix exists
-        File matrixFile = new File("src/main/resources/output/matrix.csv");
-        if (!matrixFile.exists()) {
+        // Check if index exists
+        File indexFile = new File(TfIdfBuilder.INDEX_PATH, IndexManifest.FILE_NAME);
+        if (!indexFile.exists()) {
             showMatrixWarning();
         }
         
         // Load search engine asynchronously
         new Thread(() -> {
             try {
-                searchEngine = new SearchEngine();
+                searchExecutor = new SearchExecutor(new SearchEngine());
                 javafx.application.Platform.runLater(() -> {
                     statusLabel.setText("Ready to search");
                     statusLabel.setStyle("-fx-text-fill: #43a047; -fx-font-size: 13px;");
@@ -177,7 +178,7 @@ public class SearchEngineGUI extends Application {
             return;
         }
 
-        if (searchEngine == null) {
+        if (searchExecutor == null) {
             showAlert("Not Ready", "Search engine is still loading. Please wait a moment.");
             return;
         }
@@ -186,26 +187,35 @@ public class SearchEngineGUI extends Application {
         statusLabel.setStyle("-fx-text-fill: #5c6bc0; -fx-font-size: 13px;");
         resultsContainer.getChildren().clear();
 
-        // Perform search in background
-        new Thread(() -> {
-            try {
-                List<SearchEngine.SearchResult> results = searchEngine.search(query, 10);
-                
+        // Perform search in background, on the search executor's worker threads
+        try {
+            searchExecutor.submit(query, 10).whenComplete((response, error) -> {
                 javafx.application.Platform.runLater(() -> {
-                    displayResultCards(query, results);
-                });
-            } catch (Exception e) {
-                javafx.application.Platform.runLater(() -> {
-                    showAlert("❌ Search Error", "Error: " + e.getMessage());
+                    if (error == null) {
+                        displayResultCards(query, response.getResults(), response.getStats());
+                        return;
+                    }
+                    showAlert("❌ Search Error", "Error: " + error.getMessage());
                     statusLabel.setText("❌ Search failed");
                     statusLabel.setStyle("-fx-text-fill: #f44336; -fx-font-size: 14px; -fx-font-weight: bold;");
                 });
-                e.printStackTrace();
-            }
-        }).start();
+                if (error != null) error.printStackTrace();
+            });
+        } catch (RejectedExecutionException e) {
+            showAlert("Busy", "Too many searches in progress. Please try again.");
+            statusLabel.setText("Ready to search");
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (searchExecutor != null) {
+            searchExecutor.close();
+        }
     }
 
-    private void displayResultCards(String query, List<SearchEngine.SearchResult> results) {
+    private void displayResultCards(String query, List<SearchEngine.SearchResult> results,
+                                    SearchEngine.QueryStats stats) {
         resultsContainer.getChildren().clear();
 
         if (results.isEmpty()) {
@@ -238,7 +248,8 @@ public class SearchEngineGUI extends Application {
             rank++;
         }
 
-        statusLabel.setText(String.format("Found %d result%s", results.size(), results.size() > 1 ? "s" : ""));
+        statusLabel.setText(String.format("Found %d result%s in %.1f ms", results.size(),
+                results.size() > 1 ? "s" : "", stats.getTotalNanos() / 1e6));
         statusLabel.setStyle("-fx-text-fill: #43a047; -fx-font-size: 13px;");
     }
 
@@ -423,9 +434,9 @@ public class SearchEngineGUI extends Application {
 
     private void showMatrixWarning() {
         Alert alert = new Alert(Alert.AlertType.WARNING);
-        alert.setTitle("Matrix Not Found");
-        alert.setHeaderText("TF-IDF Matrix Missing");
-        alert.setContentText("The TF-IDF matrix file is missing. Please build it first by running:\n\n" +
+        alert.setTitle("Index Not Found");
+        alert.setHeaderText("TF-IDF Index Missing");
+        alert.setContentText("The TF-IDF index file is missing. Please build it first by running:\n\n" +
                             "mvn exec:java -Dexec.mainClass=com.myorg.search.BuildMatrixOnly");
         alert.showAndWait();
     }
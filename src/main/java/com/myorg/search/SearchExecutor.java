@@ -0,0 +1,203 @@
+package com.myorg.search;
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SearchExecutor - Runs searches of a SearchEngine on a pool of worker threads,
+ * for serving many users from one JVM.
+ *
+ * At most maxPending searches are admitted at a time, running or waiting for a
+ * thread. Beyond that, submit() fails fast with a RejectedExecutionException
+ * instead of queueing without bound, so an overloaded server sheds load and
+ * keeps its latency rather than building an ever longer backlog.
+ *
+ * Workers are platform threads by default. With virtualThreads, every search
+ * runs on its own virtual thread when the JVM supports them (Java 21+), and
+ * maxPending alone bounds the concurrency; older JVMs fall back to the pool.
+ */
+public class SearchExecutor implements Closeable {
+
+    private final SearchEngine engine;
+    private final ExecutorService executor;
+    private final int maxPending;
+    private final Semaphore permits;
+    private final boolean virtual;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    /**
+     * One worker per core, up to 16 searches admitted per worker.
+     */
+    public SearchExecutor(SearchEngine engine) {
+        this(engine, Runtime.getRuntime().availableProcessors(),
+                Runtime.getRuntime().availableProcessors() * 16, false);
+    }
+
+    /**
+     * @param engine Engine the searches run on
+     * @param threads Number of worker threads, when not using virtual threads
+     * @param maxPending Searches admitted at once, running or queued, before rejecting
+     * @param virtualThreads Run each search on a virtual thread if the JVM supports them
+     */
+    public SearchExecutor(SearchEngine engine, int threads, int maxPending, boolean virtualThreads) {
+        if (threads < 1 || maxPending < 1) {
+            throw new IllegalArgumentException("threads and maxPending must be positive: " + threads + ", " + maxPending);
+        }
+        this.engine = engine;
+        this.maxPending = maxPending;
+        this.permits = new Semaphore(maxPending);
+        ExecutorService virtualExecutor = virtualThreads ? newVirtualThreadExecutor() : null;
+        this.virtual = virtualExecutor != null;
+        if (virtualExecutor != null) {
+            this.executor = virtualExecutor;
+        } else {
+            AtomicInteger workerCount = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread t = new Thread(r, "search-worker-" + workerCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor(), looked up at runtime so the code
+     * still runs on Java 17; null if the JVM has no virtual threads.
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            System.out.println("⚠️ Virtual threads are not available on this JVM, using a thread pool.");
+            return null;
+        }
+    }
+
+    /**
+     * Queue a search.
+     *
+     * @return Future completed with the results and statistics of the search
+     * @throws RejectedExecutionException If maxPending searches are already admitted
+     */
+    public CompletableFuture<SearchEngine.SearchResponse> submit(String query, int topK) {
+        return submit(query, topK, null);
+    }
+
+    /**
+     * Queue a search ranked by a given model.
+     *
+     * @param scorer Ranking model, or null for cosine similarity
+     * @return Future completed with the results and statistics of the search
+     * @throws RejectedExecutionException If maxPending searches are already admitted
+     */
+    public CompletableFuture<SearchEngine.SearchResponse> submit(String query, int topK, Scorer scorer) {
+        if (!permits.tryAcquire()) {
+            rejected.increment();
+            throw new RejectedExecutionException("Too many searches in progress, try again later.");
+        }
+        long submitted = System.nanoTime();
+        CompletableFuture<SearchEngine.SearchResponse> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                // Release the permit before completing, so a caller may submit again right away
+                SearchEngine.SearchResponse response;
+                try {
+                    response = engine.search(query, topK, scorer, System.nanoTime() - submitted);
+                } catch (Throwable t) {
+                    permits.release();
+                    failed.increment();
+                    future.completeExceptionally(t);
+                    return;
+                }
+                permits.release();
+                completed.increment();
+                future.complete(response);
+            });
+        } catch (RejectedExecutionException e) {
+            // Executor shut down
+            permits.release();
+            rejected.increment();
+            throw e;
+        }
+        return future;
+    }
+
+    /**
+     * Run a search on the executor and wait for it.
+     *
+     * @throws RejectedExecutionException If maxPending searches are already admitted
+     */
+    public SearchEngine.SearchResponse search(String query, int topK) throws InterruptedException {
+        return search(query, topK, null);
+    }
+
+    /**
+     * Run a search ranked by a given model on the executor and wait for it.
+     *
+     * @param scorer Ranking model, or null for cosine similarity
+     * @throws RejectedExecutionException If maxPending searches are already admitted
+     */
+    public SearchEngine.SearchResponse search(String query, int topK, Scorer scorer) throws InterruptedException {
+        try {
+            return submit(query, topK, scorer).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException("Search failed", cause);
+        }
+    }
+
+    public SearchEngine getEngine() {
+        return engine;
+    }
+
+    /** Whether searches run on virtual threads */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    /** Searches turned away because maxPending searches were already admitted */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /** Searches admitted and not finished yet, running or queued */
+    public int getPendingCount() {
+        return maxPending - permits.availablePermits();
+    }
+
+    /** Stop accepting searches and wait briefly for the admitted ones to finish. */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d completed, %d rejected, %d failed, %d in progress",
+                getCompletedCount(), getRejectedCount(), getFailedCount(), getPendingCount());
+    }
+}
@@ -0,0 +1,474 @@
+package com.myorg.search;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SearchServer - Embedded HTTP search API on the JDK HttpServer, no external services.
+ *
+ *   GET /search?q=QUERY&k=TOPK   results and query statistics as JSON
+ *       &model=cosine|bm25         ranking model, cosine TF-IDF by default
+ *       &k1=1.2&b=0.75             BM25 parameters
+ *       q="كرة القدم" المغرب         quoted phrases must occur as such in the results
+ *       q=+كرة -السلة (مصر OR المغرب)  +required, -excluded, AND, OR, NOT and grouping, see QueryParser
+ *   GET /stats                   index, search executor and result cache counters as JSON
+ *   POST /reload                 reopen the index, e.g. after a rebuild, while serving;
+ *                                refused unless an admin token is configured, sent as
+ *                                "Authorization: Bearer TOKEN", or loopback clients are
+ *                                trusted with --trust-loopback (not behind a local proxy)
+ *   GET /                        the search-demo.html page, wired to /search
+ *
+ * Searches run on a SearchExecutor: when it is saturated, /search answers
+ * 503 with Retry-After instead of queueing. Connections are kept alive
+ * (HTTP/1.1 with Content-Length on every response). With --reload-interval,
+ * the index manifest is checked every few seconds and the index reloaded once
+ * a build, update or merge committed, without dropping a request. Request
+ * bodies are not used: they are read and dropped so the connection can be
+ * kept alive, and a request with more than MAX_REQUEST_BODY bytes is refused.
+ *
+ * Usage: SearchServer [--port=8080] [--threads=N] [--max-pending=N] [--virtual]
+ *                     [--result-cache=N] [--parallel-scoring] [--reload-interval=SECONDS]
+ *                     [--proximity-boost=WEIGHT] [--admin-token=TOKEN] [--trust-loopback]
+ */
+public class SearchServer {
+
+    private static final int DEFAULT_TOP_K = 10;
+    private static final int MAX_TOP_K = 100;
+    private static final String DEMO_PAGE = "search-demo.html";
+    private static final int MAX_REQUEST_BODY = 64 * 1024;
+
+    private final SearchExecutor searchExecutor;
+    private final HttpServer server;
+    private final ExecutorService httpExecutor;
+    private ScheduledExecutorService reloader;
+    private volatile String adminToken;
+    private volatile boolean trustLoopback;
+
+    /**
+     * @param searchExecutor Executor the searches run on
+     * @param port Port to listen on, 0 for any free port
+     * @param virtualThreads Handle connections on virtual threads if the JVM supports them
+     */
+    public SearchServer(SearchExecutor searchExecutor, int port, boolean virtualThreads) throws IOException {
+        this.searchExecutor = searchExecutor;
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        ExecutorService virtualExecutor = virtualThreads ? SearchExecutor.newVirtualThreadExecutor() : null;
+        if (virtualExecutor != null) {
+            this.httpExecutor = virtualExecutor;
+        } else {
+            // Handlers mostly wait on the search executor, so allow more of them than workers
+            AtomicInteger handlerCount = new AtomicInteger();
+            this.httpExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 4, r -> {
+                Thread t = new Thread(r, "http-handler-" + handlerCount.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        server.setExecutor(httpExecutor);
+        server.createContext("/search", exchange -> handle(exchange, "GET", this::search));
+        server.createContext("/stats", exchange -> handle(exchange, "GET", this::stats));
+        server.createContext("/reload", exchange -> handle(exchange, "POST", this::reload));
+        server.createContext("/", exchange -> handle(exchange, "GET", this::demoPage));
+    }
+
+    /**
+     * Token allowing /reload. Without one, /reload is refused unless loopback clients are trusted.
+     *
+     * @param adminToken Token expected as "Authorization: Bearer TOKEN", or null for none
+     */
+    public void setAdminToken(String adminToken) {
+        this.adminToken = adminToken == null || adminToken.isEmpty() ? null : adminToken;
+    }
+
+    /**
+     * Allow /reload from loopback clients without the admin token. Off by default:
+     * behind a reverse proxy or gateway on the same host, every client looks local.
+     */
+    public void setTrustLoopback(boolean trustLoopback) {
+        this.trustLoopback = trustLoopback;
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    /** Port the server listens on */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Check the index manifest periodically and reload the index when it changed.
+     */
+    public synchronized void reloadEvery(long seconds) {
+        if (reloader != null) {
+            reloader.shutdownNow();
+        }
+        reloader = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "index-reloader");
+            t.setDaemon(true);
+            return t;
+        });
+        SearchEngine engine = searchExecutor.getEngine();
+        reloader.scheduleWithFixedDelay(() -> {
+            try {
+                engine.reloadIfChanged();
+            } catch (IOException | RuntimeException e) {
+                // Keep serving the current snapshot and try again at the next check
+                System.err.println("❌ Index reload failed: " + e.getMessage());
+            }
+        }, seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /** Stop accepting connections, give open exchanges a second to finish, then stop the searches. */
+    public void stop() {
+        synchronized (this) {
+            if (reloader != null) {
+                reloader.shutdownNow();
+            }
+        }
+        server.stop(1);
+        httpExecutor.shutdown();
+        searchExecutor.close();
+    }
+
+    private void handle(HttpExchange exchange, String method, Handler handler) throws IOException {
+        try (exchange) {
+            if (!method.equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", method);
+                send(exchange, error(405, "Only " + method + " is supported"));
+                return;
+            }
+            if (!drainRequestBody(exchange)) {
+                exchange.getResponseHeaders().set("Connection", "close");
+                send(exchange, error(413, "Request body over " + MAX_REQUEST_BODY + " bytes"));
+                return;
+            }
+            Response response;
+            try {
+                response = handler.handle(exchange);
+            } catch (RejectedExecutionException e) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+                response = error(503, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                response = error(503, "Interrupted");
+            } catch (RuntimeException e) {
+                System.err.println("❌ Error handling " + exchange.getRequestURI() + ": " + e);
+                response = error(500, "Internal error");
+            }
+            send(exchange, response);
+        }
+    }
+
+    /**
+     * Read and drop the request body, which no endpoint uses, so the connection
+     * can serve the next request.
+     *
+     * @return false if the body is over MAX_REQUEST_BODY bytes
+     */
+    private static boolean drainRequestBody(HttpExchange exchange) throws IOException {
+        try (InputStream body = exchange.getRequestBody()) {
+            byte[] buffer = new byte[8192];
+            long total = 0;
+            for (int read; (read = body.read(buffer)) >= 0; ) {
+                total += read;
+                if (total > MAX_REQUEST_BODY) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    /** Whether the client may use the admin endpoints: see setAdminToken() and setTrustLoopback() */
+    private boolean isAdmin(HttpExchange exchange) {
+        if (trustLoopback && exchange.getRemoteAddress().getAddress().isLoopbackAddress()) {
+            return true;
+        }
+        String token = adminToken;
+        if (token == null) {
+            return false;
+        }
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        return authorization != null && MessageDigest.isEqual(authorization.getBytes(StandardCharsets.UTF_8),
+                ("Bearer " + token).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Response search(HttpExchange exchange) throws InterruptedException {
+        Map<String, String> params = parseQuery(exchange.getRequestURI().getRawQuery());
+        String query = params.getOrDefault("q", "").trim();
+        if (query.isEmpty()) {
+            return error(400, "Missing query parameter q");
+        }
+        int topK = DEFAULT_TOP_K;
+        if (params.containsKey("k")) {
+            try {
+                topK = Integer.parseInt(params.get("k"));
+            } catch (NumberFormatException e) {
+                return error(400, "Parameter k must be a number");
+            }
+            if (topK < 1 || topK > MAX_TOP_K) {
+                return error(400, "Parameter k must be between 1 and " + MAX_TOP_K);
+            }
+        }
+        Scorer scorer;
+        try {
+            Double k1 = params.containsKey("k1") ? Double.valueOf(params.get("k1")) : null;
+            Double b = params.containsKey("b") ? Double.valueOf(params.get("b")) : null;
+            scorer = searchExecutor.getEngine().getScorer(params.get("model"), k1, b);
+        } catch (IllegalArgumentException e) {
+            // NumberFormatException included
+            return error(400, e instanceof NumberFormatException ? "Parameters k1 and b must be numbers" : e.getMessage());
+        }
+
+        SearchEngine.SearchResponse response = searchExecutor.search(query, topK, scorer);
+        SearchEngine.QueryStats stats = response.getStats();
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\"query\":").append(quote(query));
+        json.append(",\"model\":").append(quote(scorer.getName()));
+        json.append(",\"terms\":[");
+        for (int i = 0; i < stats.getQueryTerms().size(); i++) {
+            if (i > 0) json.append(',');
+            json.append(quote(stats.getQueryTerms().get(i)));
+        }
+        json.append("],\"phrases\":[");
+        for (int i = 0; i < stats.getPhrases().size(); i++) {
+            if (i > 0) json.append(',');
+            json.append('[');
+            List<String> terms = stats.getPhrases().get(i).getTerms();
+            for (int j = 0; j < terms.size(); j++) {
+                if (j > 0) json.append(',');
+                json.append(quote(terms.get(j)));
+            }
+            json.append(']');
+        }
+        json.append("],\"filter\":").append(stats.getBooleanQuery() == null ? "null" : quote(stats.getBooleanQuery().toString()));
+        json.append(",\"stats\":{");
+        json.append("\"totalMs\":").append(millis(stats.getTotalNanos()));
+        json.append(",\"queueMs\":").append(millis(stats.getQueueNanos()));
+        json.append(",\"preprocessMs\":").append(millis(stats.getPreprocessNanos()));
+        json.append(",\"rankMs\":").append(millis(stats.getRankNanos()));
+        json.append(",\"hydrateMs\":").append(millis(stats.getHydrateNanos()));
+        json.append(",\"matchedTerms\":").append(stats.getMatchedTerms());
+        json.append(",\"segments\":").append(stats.getSegments());
+        json.append(",\"cached\":").append(stats.isCached());
+        json.append("},\"results\":[");
+        int rank = 1;
+        for (SearchEngine.SearchResult result : response.getResults()) {
+            if (rank > 1) json.append(',');
+            json.append("{\"rank\":").append(rank++);
+            json.append(",\"documentName\":").append(quote(result.getDocumentName()));
+            json.append(",\"score\":").append(result.getScore());
+            json.append(",\"source\":").append(quote(result.getSource()));
+            json.append(",\"category\":").append(quote(result.getCategory()));
+            json.append(",\"filePath\":").append(quote(result.getFilePath()));
+            json.append(",\"content\":").append(quote(result.getContent()));
+            json.append('}');
+        }
+        json.append("]}");
+        return new Response(200, "application/json; charset=utf-8", json.toString());
+    }
+
+    private Response stats(HttpExchange exchange) {
+        SearchEngine engine = searchExecutor.getEngine();
+        StringBuilder json = new StringBuilder("{");
+        appendIndex(json, engine);
+        json.append(",\"completed\":").append(searchExecutor.getCompletedCount())
+                .append(",\"rejected\":").append(searchExecutor.getRejectedCount())
+                .append(",\"failed\":").append(searchExecutor.getFailedCount())
+                .append(",\"inProgress\":").append(searchExecutor.getPendingCount())
+                .append(",\"virtualThreads\":").append(searchExecutor.isVirtual());
+        ResultCache cache = engine.getResultCache();
+        if (cache != null) {
+            json.append(",\"resultCache\":{\"size\":").append(cache.size())
+                    .append(",\"hits\":").append(cache.getHits())
+                    .append(",\"misses\":").append(cache.getMisses())
+                    .append(",\"hitRate\":").append(String.format(Locale.ROOT, "%.4f", cache.getHitRate()))
+                    .append('}');
+        }
+        json.append('}');
+        return new Response(200, "application/json; charset=utf-8", json.toString());
+    }
+
+    private Response reload(HttpExchange exchange) {
+        if (!isAdmin(exchange)) {
+            return error(403, adminToken != null ? "Reload needs the admin token"
+                    : trustLoopback ? "Reload is only allowed from this machine without an admin token"
+                    : "Reload is disabled: start the server with --admin-token or --trust-loopback");
+        }
+        SearchEngine engine = searchExecutor.getEngine();
+        try {
+            engine.reload();
+        } catch (IOException e) {
+            return error(500, "Index reload failed, still serving the previous index: " + e.getMessage());
+        }
+        StringBuilder json = new StringBuilder("{");
+        appendIndex(json, engine);
+        return new Response(200, "application/json; charset=utf-8", json.append('}').toString());
+    }
+
+    /** "index" member: the snapshot searched now and the number of reloads */
+    private static void appendIndex(StringBuilder json, SearchEngine engine) {
+        IndexSnapshot snapshot = engine.getSnapshot();
+        json.append("\"index\":{\"documents\":").append(snapshot.getLiveDocumentCount())
+                .append(",\"segments\":").append(snapshot.getSegments().size())
+                .append(",\"terms\":").append(snapshot.getTermCount())
+                .append(",\"reloads\":").append(engine.getReloadCount())
+                .append('}');
+    }
+
+    private Response demoPage(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        if (!path.equals("/") && !path.equals("/" + DEMO_PAGE)) {
+            return error(404, "Not found: " + path);
+        }
+        try {
+            return new Response(200, "text/html; charset=utf-8",
+                    Files.readString(Paths.get(DEMO_PAGE), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return error(404, DEMO_PAGE + " not found in the working directory");
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", response.contentType);
+        exchange.sendResponseHeaders(response.status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static Response error(int status, String message) {
+        return new Response(status, "application/json; charset=utf-8", "{\"error\":" + quote(message) + "}");
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) return params;
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = URLDecoder.decode(eq >= 0 ? pair.substring(0, eq) : pair, StandardCharsets.UTF_8);
+            String value = eq >= 0 ? URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8) : "";
+            params.putIfAbsent(name, value);
+        }
+        return params;
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+
+    /** JSON string literal, or null */
+    static String quote(String s) {
+        if (s == null) return "null";
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"': sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                case '\t': sb.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private interface Handler {
+        Response handle(HttpExchange exchange) throws InterruptedException;
+    }
+
+    /**
+     * Response - Status, content type and body of a response.
+     */
+    private static class Response {
+        private final int status;
+        private final String contentType;
+        private final String body;
+
+        Response(int status, String contentType, String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+    }
+
+    public static void main(String[] args) {
+        int port = 8080;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int maxPending = threads * 16;
+        boolean virtualThreads = false;
+        int resultCache = ResultCache.DEFAULT_CAPACITY;
+        boolean parallelScoring = false;
+        int reloadInterval = 0;
+        double proximityBoost = 0.0;
+        String adminToken = null;
+        boolean trustLoopback = false;
+        for (String arg : args) {
+            if (arg.startsWith("--port=")) {
+                port = Integer.parseInt(arg.substring("--port=".length()));
+            } else if (arg.startsWith("--threads=")) {
+                threads = Integer.parseInt(arg.substring("--threads=".length()));
+            } else if (arg.startsWith("--max-pending=")) {
+                maxPending = Integer.parseInt(arg.substring("--max-pending=".length()));
+            } else if (arg.equals("--virtual")) {
+                virtualThreads = true;
+            } else if (arg.startsWith("--result-cache=")) {
+                resultCache = Integer.parseInt(arg.substring("--result-cache=".length()));
+            } else if (arg.equals("--parallel-scoring")) {
+                parallelScoring = true;
+            } else if (arg.startsWith("--reload-interval=")) {
+                reloadInterval = Integer.parseInt(arg.substring("--reload-interval=".length()));
+            } else if (arg.startsWith("--proximity-boost=")) {
+                proximityBoost = Double.parseDouble(arg.substring("--proximity-boost=".length()));
+            } else if (arg.startsWith("--admin-token=")) {
+                adminToken = arg.substring("--admin-token=".length());
+            } else if (arg.equals("--trust-loopback")) {
+                trustLoopback = true;
+            }
+        }
+
+        try {
+            SearchEngine engine = new SearchEngine(null, Paths.get(TfIdfBuilder.INDEX_PATH), resultCache);
+            if (parallelScoring) {
+                engine.setParallelScoring(ForkJoinPool.commonPool(), CosineSimilarity.DEFAULT_PARALLEL_THRESHOLD);
+            }
+            if (proximityBoost > 0.0) {
+                engine.setProximityBoost(new ProximityBoost(proximityBoost, ProximityBoost.DEFAULT_WINDOW));
+            }
+            SearchExecutor searchExecutor = new SearchExecutor(engine, threads, maxPending, virtualThreads);
+            SearchServer server = new SearchServer(searchExecutor, port, virtualThreads);
+            server.setAdminToken(adminToken);
+            server.setTrustLoopback(trustLoopback);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "search-server-shutdown"));
+            if (reloadInterval > 0) {
+                server.reloadEvery(reloadInterval);
+            }
+            server.start();
+            System.out.println("🌐 Search API listening on http://localhost:" + server.getPort()
+                    + "/search?q=...&k=" + DEFAULT_TOP_K
+                    + (searchExecutor.isVirtual() ? " (virtual threads)" : " (" + threads + " search threads)"));
+        } catch (Exception e) {
+            System.err.println("❌ Could not start the search server:");
+            e.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
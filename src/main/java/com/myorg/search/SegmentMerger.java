@@ -0,0 +1,216 @@
+package com.myorg.search;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * SegmentMerger - Rewrites segments of an index as one new segment. Deleted
+ * documents are dropped, document frequencies are recounted over the live
+ * documents, and norms and max scores are recomputed with the statistics of the
+ * whole index, so merging everything gives the same index as a full rebuild.
+ * Positions are kept if every merged segment has them.
+ *
+ * A merge runs in three steps so the slow one can run in the background while
+ * the index keeps changing: start() captures the segments and their live
+ * documents from the manifest, write() writes the new segment without touching
+ * the manifest, and commit() applies it to the manifest as it is by then.
+ * Documents deleted in the meantime simply have no file entry pointing to their
+ * copy in the new segment, so they stay deleted there.
+ *
+ * Segment files are memory-mapped whole, so a merge whose files could grow past
+ * IndexWriter.MAX_FILE_BYTES is refused up front; TieredMergePolicy never asks for one.
+ */
+public class SegmentMerger {
+
+    private final Path indexDir;
+    private final long memoryBudget;
+
+    /**
+     * @param indexDir Index folder holding the segments
+     * @param memoryBudget Approximate bytes of postings buffered before spilling a run to disk
+     */
+    public SegmentMerger(Path indexDir, long memoryBudget) {
+        this.indexDir = indexDir;
+        this.memoryBudget = memoryBudget;
+    }
+
+    /**
+     * Merge segments of the manifest into a new segment right away. The manifest is
+     * updated in memory to point the files to the new segment; saving it commits the merge.
+     *
+     * @return Name of the new segment, or null if the merged segments had no live documents
+     */
+    public String merge(IndexManifest manifest, Collection<String> segmentNames) throws IOException {
+        Merge merge = start(manifest, segmentNames);
+        try {
+            write(merge);
+        } catch (IOException | RuntimeException e) {
+            abort(manifest, merge);
+            throw e;
+        }
+        return commit(manifest, merge);
+    }
+
+    /**
+     * Open the segments to merge and the other segments of the manifest, and reserve
+     * the name of the new segment. The segment files are memory-mapped here, so the
+     * merge can still read them if a later commit deletes them.
+     */
+    public Merge start(IndexManifest manifest, Collection<String> segmentNames) throws IOException {
+        long estimate = estimateMergedBytes(indexDir, segmentNames);
+        if (estimate > IndexWriter.MAX_FILE_BYTES) {
+            throw new IOException("❌ Merging " + segmentNames + " could write a file of " + estimate
+                    + " bytes, over the " + IndexWriter.MAX_FILE_BYTES + " bytes a segment file can have.");
+        }
+        Merge merge = new Merge(manifest.newSegmentName());
+        for (IndexManifest.SegmentInfo info : manifest.getSegments()) {
+            Path path = IndexManifest.segmentPath(indexDir, info.getName());
+            if (segmentNames.contains(info.getName())) {
+                merge.segments.add(info);
+                merge.indexes.add(InvertedIndex.open(path));
+                merge.stores.add(DocumentStore.open(DocumentStore.pathFor(path)));
+                merge.live.add(manifest.liveDocuments(info));
+            } else {
+                merge.others.add(SegmentStatistics.forSegment(path));
+            }
+        }
+        return merge;
+    }
+
+    /**
+     * Upper bound of the largest file a merge of the segments writes: per kind of
+     * file (segment, positions, document store), the sum of their sizes. Merging
+     * drops deleted documents and shares the dictionary, so the real files are smaller.
+     */
+    static long estimateMergedBytes(Path indexDir, Collection<String> segmentNames) throws IOException {
+        long segments = 0;
+        long positions = 0;
+        long documents = 0;
+        for (String name : segmentNames) {
+            Path path = IndexManifest.segmentPath(indexDir, name);
+            segments += Files.size(path);
+            Path positionsPath = PositionIndex.pathFor(path);
+            if (Files.exists(positionsPath)) positions += Files.size(positionsPath);
+            documents += Files.size(DocumentStore.pathFor(path));
+        }
+        return Math.max(segments, Math.max(positions, documents));
+    }
+
+    /**
+     * Write the merged segment. Does not use the manifest, so it needs no lock.
+     */
+    public void write(Merge merge) throws IOException {
+        Path segmentPath = IndexManifest.segmentPath(indexDir, merge.name);
+        boolean positions = true;
+        for (InvertedIndex index : merge.indexes) {
+            positions &= index.hasPositions();
+        }
+        try (IndexWriter writer = new IndexWriter(segmentPath, memoryBudget, new CollectionStatistics(merge.others),
+                positions);
+             DocumentStore.Writer documents = new DocumentStore.Writer(DocumentStore.pathFor(segmentPath))) {
+
+            // Copy the live documents first, in segment order, so the postings of every
+            // term can then be added segment by segment in increasing document id order
+            for (int s = 0; s < merge.segments.size(); s++) {
+                InvertedIndex index = merge.indexes.get(s);
+                DocumentStore store = merge.stores.get(s);
+                boolean[] live = merge.live.get(s);
+                int[] docIdMap = new int[index.getDocumentCount()];
+                for (int docId = 0; docId < docIdMap.length; docId++) {
+                    if (!live[docId]) {
+                        docIdMap[docId] = -1;
+                        continue;
+                    }
+                    docIdMap[docId] = writer.addDocumentEntry(index.getDocumentPath(docId),
+                            index.getDocumentSource(docId), index.getDocumentLength(docId));
+                    documents.add(store.get(docId));
+                }
+                merge.docIdMaps.put(merge.segments.get(s).getName(), docIdMap);
+            }
+
+            for (int s = 0; s < merge.segments.size(); s++) {
+                InvertedIndex index = merge.indexes.get(s);
+                int[] docIdMap = merge.docIdMaps.get(merge.segments.get(s).getName());
+                for (int termId = 0; termId < index.getTermCount(); termId++) {
+                    InvertedIndex.PostingList postings = index.getPostings(termId);
+                    if (postings == null) continue;
+                    PositionIndex.PositionList positionList = positions ? index.getPositions(termId) : null;
+                    String term = index.getTerm(termId);
+                    for (int i = 0; i < postings.size(); i++) {
+                        int docId = docIdMap[postings.getDocId(i)];
+                        if (docId >= 0) {
+                            writer.addPosting(term, docId, postings.getCount(i),
+                                    positionList != null ? positionList.getPositions(i) : null);
+                        }
+                    }
+                }
+            }
+
+            merge.documentCount = writer.getDocumentCount();
+            if (merge.documentCount > 0) {
+                writer.finish();
+                documents.finish();
+            }
+        }
+    }
+
+    /**
+     * Point the files of the merged segments to the new segment and replace the
+     * merged segments by it. Saving the manifest makes the merge visible.
+     *
+     * @return Name of the new segment, or null if none of its documents is still live
+     */
+    public String commit(IndexManifest manifest, Merge merge) {
+        Map<String, IndexManifest.FileEntry> files = manifest.getFiles();
+        for (Map.Entry<String, IndexManifest.FileEntry> entry : files.entrySet()) {
+            IndexManifest.FileEntry file = entry.getValue();
+            int[] docIdMap = merge.docIdMaps.get(file.getSegment());
+            if (docIdMap != null) {
+                entry.setValue(new IndexManifest.FileEntry(file.getPath(), file.getModified(), file.getSize(),
+                        file.getHash(), merge.name, docIdMap[file.getDocId()]));
+            }
+        }
+        manifest.getSegments().removeIf(info -> merge.docIdMaps.containsKey(info.getName()));
+        manifest.addSegment(merge.name, merge.documentCount);
+        manifest.removeEmptySegments();
+        if (!manifest.hasSegment(merge.name)) return null;
+        System.out.println("🔀 Merged " + merge.segments.size() + " segments into " + merge.name
+                + " (" + merge.documentCount + " documents)");
+        return merge.name;
+    }
+
+    /**
+     * Give up a merge that failed to write: release its segment name so its files are cleaned up.
+     */
+    public void abort(IndexManifest manifest, Merge merge) {
+        manifest.abandonSegment(merge.name);
+    }
+
+    /**
+     * Merge - One merge in progress: the segments it reads and the segment it writes.
+     */
+    public static class Merge {
+        private final String name;
+        private final List<IndexManifest.SegmentInfo> segments = new ArrayList<>();
+        private final List<InvertedIndex> indexes = new ArrayList<>();
+        private final List<DocumentStore> stores = new ArrayList<>();
+        private final List<boolean[]> live = new ArrayList<>();
+        private final List<SegmentStatistics> others = new ArrayList<>();
+        private final Map<String, int[]> docIdMaps = new HashMap<>();
+        private int documentCount;
+
+        private Merge(String name) {
+            this.name = name;
+        }
+
+        /** Name of the segment written by the merge */
+        public String getName() {
+            return name;
+        }
+
+        public int getSegmentCount() {
+            return segments.size();
+        }
+    }
+}
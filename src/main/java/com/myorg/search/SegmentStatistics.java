@@ -0,0 +1,137 @@
+package com.myorg.search;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+
+/**
+ * SegmentStatistics - Document count, total length and document frequency of
+ * every term of a segment: what CollectionStatistics needs to write another
+ * segment of the same index. Written by IndexWriter next to the segment, _0.seg →
+ * _0.stats, with the terms sorted by their UTF-8 bytes so a document frequency
+ * is a binary search comparing bytes in place in the memory-mapped file. Opening only reads the header, so an update pays a
+ * few lookups per existing segment instead of opening every one of them.
+ *
+ * Segments written before statistics files existed are opened as an InvertedIndex instead.
+ *
+ * Layout (big-endian):
+ *   header   magic, version, documentCount, termCount, long totalLength
+ *   offsets  per term, in term order: int offset of its entry from the end of the table
+ *   entries  per term, in term order: term (UTF-8), document frequency
+ */
+public class SegmentStatistics {
+
+    static final int MAGIC = 0x41534553; // "ASES"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 4 * Integer.BYTES + Long.BYTES;
+
+    private final ByteBuffer buffer;
+    private final InvertedIndex index;
+    private final int documentCount;
+    private final int termCount;
+    private final long totalLength;
+
+    private SegmentStatistics(ByteBuffer buffer, InvertedIndex index, int documentCount, int termCount,
+                              long totalLength) {
+        this.buffer = buffer;
+        this.index = index;
+        this.documentCount = documentCount;
+        this.termCount = termCount;
+        this.totalLength = totalLength;
+    }
+
+    /**
+     * Statistics belonging to a segment file: _0.seg → _0.stats
+     */
+    public static Path pathFor(Path indexPath) {
+        String name = indexPath.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return indexPath.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".stats");
+    }
+
+    /**
+     * Statistics of a segment, from its statistics file if it has one.
+     */
+    public static SegmentStatistics forSegment(Path segmentPath) throws IOException {
+        Path path = pathFor(segmentPath);
+        return Files.exists(path) ? open(path) : of(InvertedIndex.open(segmentPath));
+    }
+
+    /**
+     * Memory-map a statistics file written by IndexWriter. Only the header is read.
+     */
+    public static SegmentStatistics open(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            InvertedIndex.checkMappable(path, channel);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("❌ Not a segment statistics file!");
+        }
+        int version = buffer.getInt(Integer.BYTES);
+        if (version != VERSION) {
+            throw new IOException("❌ Unsupported statistics version " + version + ", please rebuild the index.");
+        }
+        return new SegmentStatistics(buffer, null, buffer.getInt(2 * Integer.BYTES),
+                buffer.getInt(3 * Integer.BYTES), buffer.getLong(4 * Integer.BYTES));
+    }
+
+    /**
+     * Statistics of an open segment.
+     */
+    public static SegmentStatistics of(InvertedIndex index) {
+        return new SegmentStatistics(null, index, index.getDocumentCount(), index.getTermCount(),
+                index.getTotalLength());
+    }
+
+    /** Documents of the segment, deleted ones included */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /** Sum of the lengths of all documents of the segment, deleted ones included */
+    public long getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * Number of documents of the segment containing the term, deleted ones included.
+     */
+    public int getDocumentFrequency(String term) {
+        if (index != null) {
+            int termId = index.getTermId(term);
+            return termId >= 0 ? index.getDocumentFrequency(termId) : 0;
+        }
+        byte[] key = term.getBytes(StandardCharsets.UTF_8);
+        int entries = HEADER_SIZE + termCount * Integer.BYTES;
+        int low = 0;
+        int high = termCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int entry = entries + buffer.getInt(HEADER_SIZE + mid * Integer.BYTES);
+            int length = buffer.getShort(entry) & 0xFFFF;
+            int comparison = compare(entry + Short.BYTES, length, key);
+            if (comparison < 0) {
+                low = mid + 1;
+            } else if (comparison > 0) {
+                high = mid - 1;
+            } else {
+                return buffer.getInt(entry + Short.BYTES + length);
+            }
+        }
+        return 0;
+    }
+
+    /** Unsigned comparison of the length bytes at offset with the key, like Arrays.compareUnsigned */
+    private int compare(int offset, int length, byte[] key) {
+        int common = Math.min(length, key.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Byte.compareUnsigned(buffer.get(offset + i), key[i]);
+            if (comparison != 0) return comparison;
+        }
+        return length - key.length;
+    }
+}
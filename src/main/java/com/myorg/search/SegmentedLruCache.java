@@ -0,0 +1,131 @@
+package com.myorg.search;
+
+import java.util.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * SegmentedLruCache - Bounded, thread-safe LRU map behind StemCache and ResultCache.
+ * Split into segments by key hash, each an LRU map behind its own lock, so
+ * concurrent indexing threads and queries rarely contend. Hits and misses are counted.
+ */
+public class SegmentedLruCache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final List<Segment<K, V>> segments = new ArrayList<>(SEGMENTS);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param capacity Maximum number of entries; least recently used entries are evicted
+     */
+    public SegmentedLruCache(int capacity) {
+        int segmentCapacity = Math.max(1, capacity / SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments.add(new Segment<>(segmentCapacity));
+        }
+    }
+
+    /**
+     * Value cached for the key, or null. Counted as a hit if there is one.
+     */
+    public V get(K key) {
+        return get(key, value -> true);
+    }
+
+    /**
+     * Value cached for the key if it is still usable, or null. Only a usable
+     * value counts as a hit.
+     */
+    public V get(K key, Predicate<? super V> usable) {
+        Segment<K, V> segment = segmentFor(key);
+        V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        if (value != null && usable.test(value)) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    /** Drop every entry. Hits and misses are still counted. */
+    public void clear() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Copy of the entries, one segment at a time: concurrent updates may or may
+     * not be part of it.
+     */
+    public List<Map.Entry<K, V>> entries() {
+        List<Map.Entry<K, V>> entries = new ArrayList<>();
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                for (Map.Entry<K, V> entry : segment.entrySet()) {
+                    entries.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private Segment<K, V> segmentFor(K key) {
+        int h = key.hashCode();
+        return segments.get(((h ^ (h >>> 16)) & 0x7FFFFFFF) % SEGMENTS);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public double getHitRate() {
+        long total = getHits() + getMisses();
+        return total == 0 ? 0.0 : (double) getHits() / total;
+    }
+
+    /** Access-ordered map evicting its least recently used entry past capacity. */
+    private static class Segment<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.myorg.search;
+
+import java.util.Arrays;
+
+/**
+ * SparseVector - Term-id based sparse vector: parallel arrays of term ids
+ * (sorted ascending) and float weights, with its L2 norm precomputed.
+ * Dot products are a merge-join over the two sorted id arrays.
+ */
+public class SparseVector {
+
+    private final int[] termIds;
+    private final float[] weights;
+    private final double norm;
+
+    /**
+     * @param termIds Term ids, sorted ascending and distinct
+     * @param weights Weight of each term id
+     */
+    public SparseVector(int[] termIds, float[] weights) {
+        if (termIds.length != weights.length) {
+            throw new IllegalArgumentException("termIds and weights must have the same length");
+        }
+        this.termIds = termIds;
+        this.weights = weights;
+        double sumOfSquares = 0.0;
+        for (float weight : weights) {
+            sumOfSquares += (double) weight * weight;
+        }
+        this.norm = Math.sqrt(sumOfSquares);
+    }
+
+    public int size() {
+        return termIds.length;
+    }
+
+    public boolean isEmpty() {
+        return termIds.length == 0;
+    }
+
+    public int getTermId(int index) {
+        return termIds[index];
+    }
+
+    public float getWeight(int index) {
+        return weights[index];
+    }
+
+    /** L2 norm: √(Σ(w_i²)) */
+    public double norm() {
+        return norm;
+    }
+
+    /**
+     * Dot product: A · B = Σ(a_i × b_i), merging the two sorted id arrays.
+     */
+    public double dot(SparseVector other) {
+        double sum = 0.0;
+        int i = 0, j = 0;
+        while (i < termIds.length && j < other.termIds.length) {
+            int a = termIds[i], b = other.termIds[j];
+            if (a == b) {
+                sum += (double) weights[i++] * other.weights[j++];
+            } else if (a < b) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Builder - Collects (term id, weight) pairs in any order; weights of
+     * repeated ids are summed.
+     */
+    public static class Builder {
+        private int[] termIds = new int[8];
+        private float[] weights = new float[8];
+        private int size;
+
+        public Builder add(int termId, float weight) {
+            if (size == termIds.length) {
+                termIds = Arrays.copyOf(termIds, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            termIds[size] = termId;
+            weights[size] = weight;
+            size++;
+            return this;
+        }
+
+        public SparseVector build() {
+            // Sort (id, weight) pairs by id, packed into longs so a primitive sort can be used
+            long[] packed = new long[size];
+            for (int i = 0; i < size; i++) {
+                packed[i] = ((long) termIds[i] << 32) | (Float.floatToRawIntBits(weights[i]) & 0xFFFFFFFFL);
+            }
+            Arrays.sort(packed);
+
+            int[] ids = new int[size];
+            float[] values = new float[size];
+            int n = 0;
+            for (long p : packed) {
+                int id = (int) (p >>> 32);
+                float weight = Float.intBitsToFloat((int) p);
+                if (n > 0 && ids[n - 1] == id) {
+                    values[n - 1] += weight;
+                } else {
+                    ids[n] = id;
+                    values[n++] = weight;
+                }
+            }
+            return new SparseVector(Arrays.copyOf(ids, n), Arrays.copyOf(values, n));
+        }
+    }
+}
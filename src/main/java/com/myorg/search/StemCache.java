@@ -0,0 +1,99 @@
+package com.myorg.search;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * StemCache - Bounded, thread-safe surface form → stem cache, a
+ * SegmentedLruCache that can be saved and loaded. Hits and misses are counted.
+ */
+public class StemCache {
+
+    private static final int DEFAULT_CAPACITY = 200_000;
+    private static final StemCache SHARED = new StemCache(DEFAULT_CAPACITY);
+
+    private final SegmentedLruCache<String, String> cache;
+
+    /**
+     * @param capacity Maximum number of cached words; least recently used words are evicted
+     */
+    public StemCache(int capacity) {
+        cache = new SegmentedLruCache<>(capacity);
+    }
+
+    /** Cache shared by every Preprocessor in the JVM (indexing and queries). */
+    public static StemCache getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Stem of a word, computing and caching it on a miss. The stemmer runs
+     * outside the segment lock, so two threads may occasionally stem the same word.
+     */
+    public String get(String word, Function<String, String> stemmer) {
+        String stem = cache.get(word);
+        if (stem == null) {
+            stem = stemmer.apply(word);
+            cache.put(word, stem);
+        }
+        return stem;
+    }
+
+    public int size() {
+        return cache.size();
+    }
+
+    public long getHits() {
+        return cache.getHits();
+    }
+
+    public long getMisses() {
+        return cache.getMisses();
+    }
+
+    public double getHitRate() {
+        return cache.getHitRate();
+    }
+
+    /**
+     * Add the entries of a file written by save(); lines are "word<TAB>stem".
+     */
+    public void load(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab <= 0) continue;
+                cache.put(line.substring(0, tab), line.substring(tab + 1));
+            }
+        }
+    }
+
+    /**
+     * Write the cached entries, one "word<TAB>stem" per line. The file is written
+     * next to its final name and moved into place, so a crash while saving leaves
+     * the previous file, never a truncated one.
+     */
+    public void save(Path path) throws IOException {
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path partial = path.resolveSibling(path.getFileName() + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(partial, StandardCharsets.UTF_8)) {
+            for (Map.Entry<String, String> entry : cache.entries()) {
+                writer.write(entry.getKey());
+                writer.write('\t');
+                writer.write(entry.getValue());
+                writer.write('\n');
+            }
+        }
+        Files.move(partial, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d words, %d hits, %d misses (%.1f%% hit rate)",
+                size(), getHits(), getMisses(), getHitRate() * 100);
+    }
+}
@@ -0,0 +1,52 @@
+package com.myorg.search;
+
+import java.util.*;
+
+/**
+ * TermDictionary - Assigns dense int ids to terms.
+ * Ids are given in order of first appearance and index every per-term array
+ * of the search index, so scoring works on ints instead of hashing strings.
+ */
+public class TermDictionary {
+
+    private final Map<String, Integer> ids;
+    private final List<String> terms;
+
+    public TermDictionary() {
+        this(16);
+    }
+
+    public TermDictionary(int expectedSize) {
+        this.ids = new HashMap<>(Math.max(16, expectedSize * 4 / 3 + 1));
+        this.terms = new ArrayList<>(expectedSize);
+    }
+
+    /**
+     * Id of the term, or -1 if it is not in the dictionary.
+     */
+    public int getId(String term) {
+        Integer id = ids.get(term);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Id of the term, adding it with the next free id if needed.
+     */
+    public int getOrAdd(String term) {
+        Integer id = ids.get(term);
+        if (id == null) {
+            id = terms.size();
+            ids.put(term, id);
+            terms.add(term);
+        }
+        return id;
+    }
+
+    public String getTerm(int id) {
+        return terms.get(id);
+    }
+
+    public int size() {
+        return terms.size();
+    }
+}
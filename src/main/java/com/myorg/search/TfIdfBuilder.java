@@ -4,80 +4,411 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32C;
 
+/**
+ * TfIdfBuilder - Builds and updates the search index from the corpus.
+ *
+ * The index is a folder of immutable segments listed by an IndexManifest.
+ * runPipeline() rebuilds it from scratch as a single segment; update() compares
+ * the corpus against the manifest and only indexes new and changed files, into
+ * a new segment, while changed and removed files leave their old documents
+ * behind as deleted. After an update the merge policy is consulted on a
+ * background thread, which merges segments while searches keep using the
+ * snapshot they opened. One builder should write to an index folder at a time.
+ * Token positions, needed by phrase queries, are recorded on request; updates
+ * keep recording them once the index has them.
+ */
 public class TfIdfBuilder {
 
+    public static final String INDEX_PATH = "src/main/resources/output/index";
+    public static final String CSV_PATH = "src/main/resources/output/matrix.csv";
+
+    /** Default postings buffer: a quarter of the maximum heap */
+    private static final long DEFAULT_MEMORY_BUDGET = Runtime.getRuntime().maxMemory() / 4;
+
+    private final Preprocessor preprocessor;
+    private final Path indexPath;
+    private final int threads;
+    private final long memoryBudget;
+    private final SegmentMerger merger;
+    private TieredMergePolicy mergePolicy = new TieredMergePolicy();
+    private boolean recordPositions;
+
+    // Guards the manifest: held by updates, and by merges while they start and commit
+    private final Object lock = new Object();
+    private IndexManifest manifest;
+    private ExecutorService mergeExecutor;
+
+    public TfIdfBuilder() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads Number of threads used to read and preprocess the corpus
+     */
+    public TfIdfBuilder(int threads) {
+        this(threads, DEFAULT_MEMORY_BUDGET);
+    }
+
+    /**
+     * @param threads Number of threads used to read and preprocess the corpus
+     * @param memoryBudget Approximate bytes of postings buffered before spilling a run to disk
+     */
+    public TfIdfBuilder(int threads, long memoryBudget) {
+        this(null, Paths.get(INDEX_PATH), threads, memoryBudget);
+    }
+
+    /**
+     * @param preprocessor Preprocessor reading the corpus, or null to create the default one when the pipeline runs
+     * @param indexPath Index folder
+     * @param threads Number of threads used to read and preprocess the corpus
+     * @param memoryBudget Approximate bytes of postings buffered before spilling a run to disk
+     */
+    public TfIdfBuilder(Preprocessor preprocessor, Path indexPath, int threads, long memoryBudget) {
+        this.preprocessor = preprocessor;
+        this.indexPath = indexPath;
+        this.threads = threads;
+        this.memoryBudget = memoryBudget;
+        this.merger = new SegmentMerger(indexPath, memoryBudget);
+    }
+
+    public void setMergePolicy(TieredMergePolicy mergePolicy) {
+        this.mergePolicy = mergePolicy;
+    }
+
+    /**
+     * Record the position of every token in new segments, for phrase queries and
+     * the proximity boost. Costs about one byte per token on disk and more memory
+     * while building.
+     */
+    public void setRecordPositions(boolean recordPositions) {
+        this.recordPositions = recordPositions;
+    }
+
+    /** Whether an index has been built in the folder */
+    public static boolean indexExists(Path indexPath) {
+        return Files.exists(indexPath.resolve(IndexManifest.FILE_NAME));
+    }
+
     public void runPipeline() throws Exception {
-        String outputPath = "src/main/resources/output/matrix.csv";
+        runPipeline(false);
+    }
 
+    /**
+     * Rebuild the index from the whole corpus, optionally also exporting the dense TF-IDF matrix as CSV.
+     * Documents are streamed from the corpus one at a time and folded into term
+     * counts by the index writer, so the corpus is never held in memory as a whole.
+     */
+    public void runPipeline(boolean exportCsv) throws Exception {
         // Preprocessor automatically knows where stopwords and corpus are located
-        Preprocessor prep = new Preprocessor();
-        Map<String, List<String>> docs = prep.loadCorpus();
+        Preprocessor prep = preprocessor != null ? preprocessor : new Preprocessor();
 
-        Map<String, Map<String, Double>> tf = computeTF(docs);
-        Map<String, Double> idf = computeIDF(tf);
-        Map<String, Map<String, Double>> tfidf = computeTFIDF(tf, idf);
+        synchronized (lock) {
+            IndexManifest manifest = manifest();
+            NewSegment segment = writeSegment(prep, manifest, prep.listCorpusFiles(),
+                    Collections.emptyMap(), CollectionStatistics.EMPTY, recordPositions);
+            // Replace everything, keeping the segment numbering so old files are never reused
+            manifest.clear();
+            segment.addTo(manifest);
+            commit(manifest);
+            System.out.println("✅ Search index saved to: " + indexPath
+                    + " (" + manifest.getFiles().size() + " documents)");
+        }
+        saveStemCache(prep);
 
-        saveCSV(tfidf, outputPath);
-        System.out.println("✅ TF-IDF matrix saved to: " + outputPath);
+        if (exportCsv) {
+            IndexSnapshot snapshot = IndexSnapshot.open(indexPath);
+            try {
+                saveCSV(snapshot, CSV_PATH);
+            } finally {
+                snapshot.retire(null);
+            }
+            System.out.println("✅ TF-IDF matrix exported to: " + CSV_PATH);
+        }
     }
 
+    /**
+     * Bring the index up to date with the corpus: index new and changed files into a
+     * new segment and drop removed ones. Files are compared with the manifest by
+     * modification time and size, and by content hash when those differ.
+     * Builds the index from scratch if there is none yet. Merges chosen by the merge
+     * policy then run in the background; see awaitMerges().
+     */
+    public void update() throws Exception {
+        if (!indexExists(indexPath)) {
+            runPipeline();
+            return;
+        }
+        Preprocessor prep = preprocessor != null ? preprocessor : new Preprocessor();
+        synchronized (lock) {
+            IndexManifest manifest = manifest();
+            Map<String, IndexManifest.FileEntry> entries = manifest.getFiles();
+
+            List<File> changed = new ArrayList<>();
+            Map<String, Long> hashes = new HashMap<>();
+            Set<String> present = new HashSet<>();
+            int touched = 0;
+            for (File file : prep.listCorpusFiles()) {
+                String path = prep.relativePath(file);
+                present.add(path);
+                IndexManifest.FileEntry entry = entries.get(path);
+                if (entry != null && entry.getModified() == file.lastModified() && entry.getSize() == file.length()) {
+                    continue;
+                }
+                long hash = hash(file);
+                if (entry != null && entry.getHash() == hash) {
+                    // Touched but unchanged: only remember the new modification time and size
+                    entries.put(path, new IndexManifest.FileEntry(path, file.lastModified(), file.length(), hash,
+                            entry.getSegment(), entry.getDocId()));
+                    touched++;
+                    continue;
+                }
+                hashes.put(path, hash);
+                changed.add(file);
+            }
+            List<String> removed = new ArrayList<>();
+            for (String path : entries.keySet()) {
+                if (!present.contains(path)) removed.add(path);
+            }
+
+            if (changed.isEmpty() && removed.isEmpty()) {
+                if (touched > 0) manifest.save(indexPath);
+                System.out.println("✅ Search index is up to date (" + entries.size() + " documents)");
+                return;
+            }
+            System.out.println("🔄 Updating index: " + changed.size() + " new or changed, "
+                    + removed.size() + " removed documents");
+
+            NewSegment segment = null;
+            if (!changed.isEmpty()) {
+                // Statistics files only: the existing segments are not opened
+                List<SegmentStatistics> segments = new ArrayList<>();
+                boolean positions = recordPositions;
+                for (IndexManifest.SegmentInfo info : manifest.getSegments()) {
+                    Path segmentPath = IndexManifest.segmentPath(indexPath, info.getName());
+                    segments.add(SegmentStatistics.forSegment(segmentPath));
+                    positions |= Files.exists(PositionIndex.pathFor(segmentPath));
+                }
+                segment = writeSegment(prep, manifest, changed, hashes, new CollectionStatistics(segments), positions);
+            }
 
-    /** Term frequency per document */
-    private Map<String, Map<String, Double>> computeTF(Map<String, List<String>> docs) {
-        Map<String, Map<String, Double>> tf = new HashMap<>();
-        for (var e : docs.entrySet()) {
-            Map<String, Double> freq = new HashMap<>();
-            for (String w : e.getValue())
-                freq.put(w, freq.getOrDefault(w, 0.0) + 1.0);
-            int total = e.getValue().size();
-            freq.replaceAll((k, v) -> v / total);
-            tf.put(e.getKey(), freq);
+            // The old documents of changed and removed files become deleted once their entries go
+            for (String path : removed) entries.remove(path);
+            for (File file : changed) entries.remove(prep.relativePath(file));
+            if (segment != null) segment.addTo(manifest);
+            manifest.removeEmptySegments();
+            commit(manifest);
+            System.out.println("✅ Search index updated: " + indexPath + " (" + entries.size() + " documents, "
+                    + manifest.getSegments().size() + " segments)");
         }
-        return tf;
+        saveStemCache(prep);
+        maybeMerge();
     }
 
-    /** Inverse document frequency */
-    private Map<String, Double> computeIDF(Map<String, Map<String, Double>> tf) {
-        Map<String, Double> idf = new HashMap<>();
-        int N = tf.size();
-        Set<String> allTerms = new HashSet<>();
-        tf.values().forEach(map -> allTerms.addAll(map.keySet()));
-        for (String t : allTerms) {
-            int df = 0;
-            for (var m : tf.values()) if (m.containsKey(t)) df++;
-            idf.put(t, Math.log((double) N / (1 + df)));
+    /**
+     * Ask the merge policy for merges and run them on the background merge thread,
+     * until it finds none. Searches are not blocked: each merge only becomes visible
+     * to snapshots opened after it is committed.
+     */
+    public void maybeMerge() {
+        synchronized (lock) {
+            if (mergeExecutor == null) {
+                mergeExecutor = Executors.newSingleThreadExecutor(r -> {
+                    Thread t = new Thread(r, "segment-merger");
+                    t.setDaemon(true);
+                    return t;
+                });
+            }
+            mergeExecutor.submit(this::runMerges);
+        }
+    }
+
+    /**
+     * Wait for the merges scheduled so far to finish, e.g. before exiting the JVM,
+     * which would otherwise abandon a merge in progress.
+     */
+    public void awaitMerges() throws InterruptedException {
+        ExecutorService executor;
+        synchronized (lock) {
+            executor = mergeExecutor;
+        }
+        if (executor == null) return;
+        try {
+            executor.submit(() -> { }).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Merge thread failed", e.getCause());
         }
-        return idf;
     }
 
-    /** TF × IDF */
-    private Map<String, Map<String, Double>> computeTFIDF(Map<String, Map<String, Double>> tf,
-                                                         Map<String, Double> idf) {
-        Map<String, Map<String, Double>> out = new LinkedHashMap<>();
-        for (var doc : tf.keySet()) {
-            Map<String, Double> map = new HashMap<>();
-            for (var term : tf.get(doc).keySet()) {
-                map.put(term, tf.get(doc).get(term) * idf.getOrDefault(term, 0.0));
+    private void runMerges() {
+        while (true) {
+            SegmentMerger.Merge merge;
+            synchronized (lock) {
+                List<String> names;
+                try {
+                    names = mergePolicy.findMerge(manifest(), indexPath);
+                    if (names.isEmpty()) return;
+                    merge = merger.start(manifest(), names);
+                } catch (IOException e) {
+                    System.out.println("⚠️ Could not start segment merge: " + e.getMessage());
+                    return;
+                }
+            }
+
+            // The slow part runs without the lock, so updates are not held up
+            try {
+                merger.write(merge);
+            } catch (IOException | RuntimeException e) {
+                synchronized (lock) {
+                    merger.abort(manifest, merge);
+                }
+                System.out.println("⚠️ Segment merge into " + merge.getName() + " failed: " + e.getMessage());
+                return;
+            }
+
+            synchronized (lock) {
+                try {
+                    merger.commit(manifest, merge);
+                    commit(manifest);
+                } catch (IOException e) {
+                    System.out.println("⚠️ Could not commit segment merge: " + e.getMessage());
+                    return;
+                }
             }
-            out.put(doc, map);
         }
-        return out;
     }
 
-    /** Save TF-IDF to CSV */
-    private void saveCSV(Map<String, Map<String, Double>> tfidf, String path) throws IOException {
-        Set<String> allTerms = new LinkedHashSet<>();
-        tfidf.values().forEach(map -> allTerms.addAll(map.keySet()));
-        List<String> docs = new ArrayList<>(tfidf.keySet());
+    /** The manifest as last committed by this builder, read from disk on first use */
+    private IndexManifest manifest() throws IOException {
+        if (manifest == null) {
+            manifest = IndexManifest.load(indexPath);
+        }
+        return manifest;
+    }
+
+    /**
+     * Index files into a new segment, reserving its name in the manifest. The
+     * segment and its file entries are only added to the manifest by the caller.
+     *
+     * @param hashes Content hashes already computed, by relative path
+     * @param statistics Statistics of the other segments of the index
+     * @param positions Whether to record the positions of the tokens
+     */
+    private NewSegment writeSegment(Preprocessor prep, IndexManifest manifest, List<File> files,
+                                    Map<String, Long> hashes, CollectionStatistics statistics,
+                                    boolean positions) throws IOException {
+        NewSegment segment = new NewSegment(manifest.newSegmentName());
+        Path segmentPath = IndexManifest.segmentPath(indexPath, segment.name);
+        try (IndexWriter writer = new IndexWriter(segmentPath, memoryBudget, statistics, positions);
+             DocumentStore.Writer documents = new DocumentStore.Writer(DocumentStore.pathFor(segmentPath))) {
+            prep.forEachDocument(files, threads, (file, tokens) -> {
+                String path = prep.relativePath(file);
+                Long hash = hashes.get(path);
+                int docId = writer.addDocument(path, prep.source(file), tokens);
+                documents.add(file, tokens.size());
+                segment.files.put(path, new IndexManifest.FileEntry(path, file.lastModified(), file.length(),
+                        hash != null ? hash : hash(file), segment.name, docId));
+            });
+            writer.finish();
+            documents.finish();
+            segment.documentCount = writer.getDocumentCount();
+        } catch (IOException | RuntimeException e) {
+            manifest.abandonSegment(segment.name);
+            throw e;
+        }
+        return segment;
+    }
+
+    /** Save the manifest, making the changes visible, and delete files no longer used. */
+    private void commit(IndexManifest manifest) throws IOException {
+        manifest.save(indexPath);
+        manifest.deleteUnusedFiles(indexPath);
+    }
+
+    /**
+     * NewSegment - A segment written by writeSegment and the file entries of its documents.
+     */
+    private static class NewSegment {
+        private final String name;
+        private final Map<String, IndexManifest.FileEntry> files = new LinkedHashMap<>();
+        private int documentCount;
+
+        NewSegment(String name) {
+            this.name = name;
+        }
+
+        void addTo(IndexManifest manifest) {
+            manifest.addSegment(name, documentCount);
+            manifest.getFiles().putAll(files);
+        }
+    }
+
+    private void saveStemCache(Preprocessor prep) throws IOException {
+        StemCache stemCache = prep.getStemCache();
+        System.out.println("🧠 Stem cache: " + stemCache);
+        if (prep.getStemCachePath() != null) {
+            stemCache.save(prep.getStemCachePath());
+        }
+    }
+
+    /** CRC-32C of the file contents */
+    private static long hash(File file) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(Files.readAllBytes(file.toPath()));
+        return crc.getValue();
+    }
+
+    /** Term frequency: occurrences normalized by document length */
+    static double termFrequency(int count, int documentLength) {
+        return (double) count / documentLength;
+    }
+
+    /** Inverse document frequency */
+    static double inverseDocumentFrequency(int documentCount, int documentFrequency) {
+        return Math.log((double) documentCount / (1 + documentFrequency));
+    }
+
+    /** Export TF-IDF of the live documents as a dense term × document CSV */
+    private void saveCSV(IndexSnapshot snapshot, String path) throws IOException {
+        int N = snapshot.getDocumentCount();
+        List<String> docs = new ArrayList<>();
+        int[] columns = new int[N];
+        for (int docId = 0; docId < N; docId++) {
+            columns[docId] = snapshot.isLive(docId) ? docs.size() : -1;
+            if (columns[docId] >= 0) docs.add(snapshot.getDocumentPath(docId));
+        }
+        // Rows sorted by term; term ids follow first appearance in the corpus
+        Integer[] termIds = new Integer[snapshot.getTermCount()];
+        for (int termId = 0; termId < termIds.length; termId++) termIds[termId] = termId;
+        Arrays.sort(termIds, Comparator.comparing(snapshot::getTerm));
+
         Files.createDirectories(Paths.get(path).getParent());
+        double[] row = new double[docs.size()];
+        List<IndexSnapshot.Segment> segments = snapshot.getSegments();
         try (BufferedWriter w = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8)) {
             w.write("Term," + String.join(",", docs.stream()
                     .map(s -> s.replace(',', '_')).toList()) + "\n");
-            for (String term : allTerms) {
-                w.write(term);
-                for (String d : docs)
-                    w.write("," + tfidf.get(d).getOrDefault(term, 0.0));
+            for (int termId : termIds) {
+                Arrays.fill(row, 0.0);
+                double idf = snapshot.getIdf(termId);
+                for (int s = 0; s < segments.size(); s++) {
+                    InvertedIndex index = segments.get(s).getIndex();
+                    int localId = segments.get(s).getLocalTermId(termId);
+                    InvertedIndex.PostingList postings = localId >= 0 ? index.getPostings(localId) : null;
+                    if (postings == null) continue;
+                    for (int i = 0; i < postings.size(); i++) {
+                        int docId = postings.getDocId(i);
+                        int column = columns[snapshot.getDocBase(s) + docId];
+                        if (column >= 0) {
+                            row[column] = termFrequency(postings.getCount(i), index.getDocumentLength(docId)) * idf;
+                        }
+                    }
+                }
+                w.write(snapshot.getTerm(termId));
+                for (double value : row)
+                    w.write("," + value);
                 w.write("\n");
             }
         }
@@ -0,0 +1,112 @@
+package com.myorg.search;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * TieredMergePolicy - Chooses which segments of an index to merge.
+ *
+ * Segments are grouped into tiers by live document count: tier 0 holds segments
+ * up to floorSegmentDocuments, and every tier above holds segments
+ * segmentsPerTier times larger. Once a tier has segmentsPerTier segments they
+ * are merged into one segment of the next tier. A document is therefore
+ * rewritten about once per tier, a logarithmic number of times in the index
+ * size, and the index keeps at most about segmentsPerTier segments per tier.
+ * Segments whose share of deleted documents exceeds maxDeletedRatio are
+ * rewritten on their own to reclaim the space and drop them from the statistics.
+ * A merge never combines segments whose files could add up to more than
+ * maxMergedBytes: fewer segments of the tier are merged, or none once the tier
+ * holds segments too large to merge at all.
+ */
+public class TieredMergePolicy {
+
+    private final int segmentsPerTier;
+    private final int floorSegmentDocuments;
+    private final double maxDeletedRatio;
+    private final long maxMergedBytes;
+
+    public TieredMergePolicy() {
+        this(10, 1_000, 0.33);
+    }
+
+    public TieredMergePolicy(int segmentsPerTier, int floorSegmentDocuments, double maxDeletedRatio) {
+        this(segmentsPerTier, floorSegmentDocuments, maxDeletedRatio, IndexWriter.MAX_FILE_BYTES);
+    }
+
+    /**
+     * @param segmentsPerTier Segments of the same tier merged at once
+     * @param floorSegmentDocuments Smaller segments all count as this size, so tiny segments share tier 0
+     * @param maxDeletedRatio Share of deleted documents above which a segment is rewritten
+     * @param maxMergedBytes Largest file a merge may write, see SegmentMerger.estimateMergedBytes
+     */
+    public TieredMergePolicy(int segmentsPerTier, int floorSegmentDocuments, double maxDeletedRatio,
+                             long maxMergedBytes) {
+        if (segmentsPerTier < 2) {
+            throw new IllegalArgumentException("segmentsPerTier must be at least 2: " + segmentsPerTier);
+        }
+        this.segmentsPerTier = segmentsPerTier;
+        this.floorSegmentDocuments = Math.max(1, floorSegmentDocuments);
+        this.maxDeletedRatio = maxDeletedRatio;
+        this.maxMergedBytes = Math.min(maxMergedBytes, IndexWriter.MAX_FILE_BYTES);
+    }
+
+    /**
+     * Next merge for the segments of the manifest: names of the segments to merge,
+     * or an empty list if the index needs no merge.
+     *
+     * @param indexDir Index folder holding the segments, for their sizes
+     */
+    public List<String> findMerge(IndexManifest manifest, Path indexDir) throws IOException {
+        Map<String, Integer> liveCounts = new HashMap<>();
+        for (IndexManifest.FileEntry file : manifest.getFiles().values()) {
+            liveCounts.merge(file.getSegment(), 1, Integer::sum);
+        }
+
+        // Smallest tier first: those merges are cheap and remove the most segments
+        TreeMap<Integer, List<IndexManifest.SegmentInfo>> tiers = new TreeMap<>();
+        for (IndexManifest.SegmentInfo segment : manifest.getSegments()) {
+            int live = liveCounts.getOrDefault(segment.getName(), 0);
+            tiers.computeIfAbsent(tier(live), t -> new ArrayList<>()).add(segment);
+        }
+        for (List<IndexManifest.SegmentInfo> tier : tiers.values()) {
+            if (tier.size() >= segmentsPerTier) {
+                tier.sort(Comparator.comparingInt(s -> liveCounts.getOrDefault(s.getName(), 0)));
+                List<String> names = new ArrayList<>();
+                for (IndexManifest.SegmentInfo segment : tier.subList(0, segmentsPerTier)) {
+                    names.add(segment.getName());
+                    if (SegmentMerger.estimateMergedBytes(indexDir, names) > maxMergedBytes) {
+                        names.remove(names.size() - 1);
+                        break;
+                    }
+                }
+                if (names.size() >= 2) return names;
+            }
+        }
+
+        // No tier is full: rewrite the segment with the most deletions, if there are too many
+        String worst = null;
+        double worstRatio = maxDeletedRatio;
+        for (IndexManifest.SegmentInfo segment : manifest.getSegments()) {
+            if (segment.getDocumentCount() == 0) continue;
+            int deleted = segment.getDocumentCount() - liveCounts.getOrDefault(segment.getName(), 0);
+            double ratio = (double) deleted / segment.getDocumentCount();
+            if (ratio > worstRatio) {
+                worst = segment.getName();
+                worstRatio = ratio;
+            }
+        }
+        return worst != null ? List.of(worst) : Collections.emptyList();
+    }
+
+    /** Tier of a segment with the given number of live documents */
+    private int tier(int liveDocuments) {
+        int tier = 0;
+        long limit = floorSegmentDocuments;
+        while (liveDocuments > limit) {
+            limit *= segmentsPerTier;
+            tier++;
+        }
+        return tier;
+    }
+}
@@ -0,0 +1,88 @@
+package com.myorg.search;
+
+import java.util.*;
+
+/**
+ * TopKCollector - Keeps the K best scored documents in a bounded min-heap.
+ * Ordering is by score descending, ties broken by ascending document id, so the
+ * result is the same as sorting every score and taking the first K.
+ */
+public class TopKCollector {
+
+    private static final Comparator<ScoredDocument> WORST_FIRST = (a, b) -> {
+        int cmp = Double.compare(a.score, b.score);
+        return cmp != 0 ? cmp : Integer.compare(b.docId, a.docId);
+    };
+
+    private final int k;
+    private final PriorityQueue<ScoredDocument> heap;
+
+    public TopKCollector(int k) {
+        this.k = k;
+        this.heap = new PriorityQueue<>(Math.max(1, k), WORST_FIRST);
+    }
+
+    /**
+     * Offer a document; it is kept if it ranks among the best K seen so far.
+     */
+    public void collect(int docId, double score) {
+        if (k <= 0) return;
+        if (heap.size() < k) {
+            heap.add(new ScoredDocument(docId, score));
+            return;
+        }
+        ScoredDocument worst = heap.peek();
+        if (score > worst.score || (score == worst.score && docId < worst.docId)) {
+            heap.poll();
+            heap.add(new ScoredDocument(docId, score));
+        }
+    }
+
+    /**
+     * Offer every document kept by another collector, e.g. one that ranked
+     * another part of the index.
+     */
+    public void collectAll(TopKCollector other) {
+        for (ScoredDocument doc : other.heap) {
+            collect(doc.docId, doc.score);
+        }
+    }
+
+    /**
+     * Score a document must exceed to enter the heap when documents are
+     * collected in increasing id order; 0 until K documents are collected.
+     */
+    public double threshold() {
+        return heap.size() < k ? 0.0 : heap.peek().score;
+    }
+
+    /**
+     * Collected documents, best first.
+     */
+    public List<ScoredDocument> results() {
+        List<ScoredDocument> results = new ArrayList<>(heap);
+        results.sort(WORST_FIRST.reversed());
+        return results;
+    }
+
+    /**
+     * ScoredDocument - A document id with its score.
+     */
+    public static class ScoredDocument {
+        private final int docId;
+        private final double score;
+
+        public ScoredDocument(int docId, double score) {
+            this.docId = docId;
+            this.score = score;
+        }
+
+        public int getDocId() {
+            return docId;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.myorg.search;
+
+import jdk.incubator.vector.*;
+
+/**
+ * VectorScoreKernel - ScoreKernel on the Vector API: as many documents as a
+ * preferred-size double vector holds are processed at once, their counts
+ * widened from float to double. Only loaded through ScoreKernel.best(), when
+ * the jdk.incubator.vector module is present.
+ */
+class VectorScoreKernel extends ScoreKernel {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS =
+            VectorSpecies.of(float.class, VectorShape.forBitSize(Math.max(64, DOUBLES.length() * Float.SIZE)));
+
+    /**
+     * Whether the CPU holds more than one double per vector, and as many floats
+     * in the matching shape: otherwise the scalar kernel is as fast.
+     */
+    static boolean isSupported() {
+        return DOUBLES.length() > 1 && FLOATS.length() == DOUBLES.length();
+    }
+
+    @Override
+    public void accumulate(double[] accumulators, float[] counts, int offset, double multiplier) {
+        DoubleVector factor = DoubleVector.broadcast(DOUBLES, multiplier);
+        int bound = DOUBLES.loopBound(accumulators.length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector widened = (DoubleVector) FloatVector.fromArray(FLOATS, counts, offset + i)
+                    .convertShape(VectorOperators.F2D, DOUBLES, 0);
+            // Multiply then add, not fma, to round exactly like the scalar loop
+            DoubleVector.fromArray(DOUBLES, accumulators, i).add(widened.mul(factor)).intoArray(accumulators, i);
+        }
+        for (; i < accumulators.length; i++) {
+            accumulators[i] += multiplier * counts[offset + i];
+        }
+    }
+
+    @Override
+    public void multiply(double[] values, double[] factors, int offset) {
+        int bound = DOUBLES.loopBound(values.length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, values, i).mul(DoubleVector.fromArray(DOUBLES, factors, offset + i))
+                    .intoArray(values, i);
+        }
+        for (; i < values.length; i++) {
+            values[i] *= factors[offset + i];
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "vector (" + DOUBLES.length() + " x double)";
+    }
+}
@@ -0,0 +1,139 @@
+package com.myorg.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ArabicTokenizerTest - The single-pass tokenizer against the regex chain it
+ * replaced: strip non-Arabic, strip diacritics, fold, collapse whitespace, split.
+ */
+class ArabicTokenizerTest {
+
+    /** Text pieces the random inputs are made of */
+    private static final String[] PIECES = {
+            "كرة", "القدم", "أحمد", "إلى", "آخر", "مدرسة", "على", "مُحَمَّدٌ", "ـ", "٣", "2024", "abc", "É",
+            "ﻻ", "ﷺ", "𐹠", "😀", "\uD800", "\uDC00", "،", "؟", ".", "-",
+            " ", "  ", "\t", "\n", "\r", "\r\n", "\u000B", "\f", " ", " ", "　", "\u001C"
+    };
+
+    /** The six characters \s matches, the only ones that separate tokens */
+    private static final String SEPARATORS = " \t\n\u000B\f\r";
+
+    @Test
+    void diacriticsAreDroppedInsideTokens() {
+        assertEquals(List.of("محمد", "كتب"), tokens("مُحَمَّدٌ كَتَبَ"));
+        assertSameTokens("مُحَمَّدٌ كَتَبَ الدَّرْسَ، ثُمَّ ذَهَبَ إِلَى المَدْرَسَةِ");
+        for (char c = 'ً'; c <= 'ْ'; c++) {
+            assertSameTokens("ك" + c + "تب " + c + " " + c + c);
+        }
+    }
+
+    @Test
+    void lettersAreFolded() {
+        assertEquals(List.of("احمد", "الي", "اخر", "مدرسه"), tokens("أحمد إلى آخر مدرسة"));
+        assertSameTokens("أإآ ةى ـأـ");
+    }
+
+    @Test
+    void latinAndDigitRunsAreDroppedWithoutSplitting() {
+        assertEquals(List.of("كره", "القدم"), tokens("كرة2024abc القدم"));
+        assertEquals(List.of("كره"), tokens("abc كرة 123"));
+        assertSameTokens("abcكرةdef 12القدم34 É٣ 2024 abc");
+        assertSameTokens("x1y2z3 كـرة.القدم-2024 ١٢٣ 12 ab");
+    }
+
+    @Test
+    void everySeparatorSplitsTokens() {
+        for (char separator : SEPARATORS.toCharArray()) {
+            assertEquals(List.of("كره", "قدم"), tokens("كرة" + separator + "قدم"), "separator " + (int) separator);
+            assertSameTokens(separator + "كرة" + separator + separator + "قدم" + separator);
+        }
+        assertSameTokens("كرة" + SEPARATORS + "قدم" + SEPARATORS);
+    }
+
+    @Test
+    void otherWhitespaceDoesNotSplitTokens() {
+        for (String space : List.of("\u00A0", "\u2003", "\u3000", "\u2028", "\u001C", "\u0085")) {
+            assertEquals(List.of("كرهقدم"), tokens("كرة" + space + "قدم"));
+            assertSameTokens(space + "كرة" + space + " قدم" + space);
+        }
+    }
+
+    @Test
+    void surrogatePairsAreKeptOrDroppedWhole() {
+        // U+10E60 RUMI DIGIT ONE is in the Arabic script, the emoji is not
+        assertEquals(List.of("كره𐹠قدم"), tokens("كرة𐹠قدم"));
+        assertEquals(List.of("كرهقدم"), tokens("كرة😀قدم"));
+        assertSameTokens("𐹠 😀 كرة𐹠😀القدم 𐹠𐹠");
+        // Lone surrogates are dropped
+        assertSameTokens("كرة\uD800 \uDC00القدم \uD800\uD800 \uDC00\uD800");
+    }
+
+    @Test
+    void emptyAndSeparatorOnlyTextHaveNoTokens() {
+        assertEquals(List.of(), tokens(""));
+        assertEquals(List.of(), tokens(SEPARATORS));
+        assertEquals(List.of(), tokens("abc 123 ... 😀"));
+    }
+
+    @Test
+    void randomTextMatchesRegexChain() {
+        Random random = new Random(8);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 50_000; i++) {
+            text.setLength(0);
+            int pieces = random.nextInt(12);
+            for (int p = 0; p < pieces; p++) {
+                text.append(PIECES[random.nextInt(PIECES.length)]);
+            }
+            assertSameTokens(text.toString());
+        }
+    }
+
+    @Test
+    void corpusMatchesRegexChain() throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(Paths.get(Preprocessor.CORPUS_PATH))) {
+            files = walk.filter(path -> path.toString().endsWith(".txt")).toList();
+        }
+        assertFalse(files.isEmpty());
+        for (Path file : files) {
+            assertSameTokens(Files.readString(file, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static List<String> tokens(String text) {
+        List<String> tokens = new ArrayList<>();
+        ArabicTokenizer.tokenize(text, tokens::add);
+        return tokens;
+    }
+
+    private static void assertSameTokens(String text) {
+        assertEquals(regexChain(text), tokens(text), "tokens of \"" + text + "\"");
+    }
+
+    /** The former tokenizer, copying the whole text at every step */
+    private static List<String> regexChain(String text) {
+        // Remove non-Arabic characters and diacritics
+        String result = text.replaceAll("[^\\p{IsArabic}\\s]", "");
+        result = result.replaceAll("[ًٌٍَُِّْ]", "");
+
+        // Normalize characters
+        result = result.replace("أ", "ا").replace("إ", "ا").replace("آ", "ا");
+        result = result.replace("ة", "ه").replace("ى", "ي");
+        result = result.replaceAll("\\s+", " ").trim();
+
+        List<String> tokens = new ArrayList<>();
+        for (String token : result.split("\\s+")) {
+            if (!token.isBlank()) tokens.add(token);
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,229 @@
+package com.myorg.search;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ScorerTest - MaxScore ranking, on one thread and partitioned over a fork/join
+ * pool, against exhaustive term-at-a-time ranking, for cosine and BM25.
+ *
+ * The index has three segments written one after the other, like updates do,
+ * with documents deleted from each. Every DUPLICATE_EVERY-th document repeats
+ * the one before it, so top-K lists hold tied scores. Terms are drawn from a
+ * Zipf distribution: the most frequent ones are in most documents and have
+ * dense count blocks, and queries of them have enough postings to be split
+ * into partitions.
+ */
+class ScorerTest {
+
+    private static final int[] SEGMENT_SIZES = {12_000, 12_000, 6_000};
+    private static final int VOCABULARY_SIZE = 2_000;
+    private static final int DUPLICATE_EVERY = 50;
+    private static final int DELETE_EVERY = 7;
+    private static final int[] TOP_K = {1, 10, 100};
+
+    @TempDir
+    static Path indexDir;
+
+    private static IndexSnapshot snapshot;
+    private static ForkJoinPool pool;
+    private static double[] cumulative;
+
+    @BeforeAll
+    static void buildIndex() throws IOException {
+        // Zipf term frequencies: term i is drawn with probability ∝ 1 / (i + 1)
+        cumulative = new double[VOCABULARY_SIZE];
+        double sum = 0.0;
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < VOCABULARY_SIZE; i++) {
+            cumulative[i] /= sum;
+        }
+
+        Random random = new Random(42);
+        IndexManifest manifest = new IndexManifest();
+        List<SegmentStatistics> written = new ArrayList<>();
+        for (int size : SEGMENT_SIZES) {
+            String name = manifest.newSegmentName();
+            Path segmentPath = IndexManifest.segmentPath(indexDir, name);
+            try (IndexWriter writer = new IndexWriter(segmentPath, 16L << 20, new CollectionStatistics(written));
+                 DocumentStore.Writer documents = new DocumentStore.Writer(DocumentStore.pathFor(segmentPath))) {
+                List<String> tokens = List.of();
+                for (int i = 0; i < size; i++) {
+                    if (i % DUPLICATE_EVERY != DUPLICATE_EVERY - 1) {
+                        tokens = new ArrayList<>();
+                        int length = 5 + random.nextInt(40);
+                        for (int t = 0; t < length; t++) {
+                            tokens.add(term(random));
+                        }
+                    }
+                    String path = name + "/doc" + i + ".txt";
+                    int docId = writer.addDocument(path, "synthetic", tokens);
+                    documents.add(new DocumentStore.StoredDocument(path, "synthetic", tokens.size(), ""));
+                    if (docId % DELETE_EVERY != 0) {
+                        manifest.getFiles().put(path, new IndexManifest.FileEntry(path, 0L, 0L, 0L, name, docId));
+                    }
+                }
+                writer.finish();
+                documents.finish();
+            }
+            manifest.addSegment(name, size);
+            written.add(SegmentStatistics.forSegment(segmentPath));
+        }
+        manifest.save(indexDir);
+
+        snapshot = IndexSnapshot.open(indexDir);
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterAll
+    static void close() {
+        pool.shutdown();
+        snapshot.retire(null);
+    }
+
+    @Test
+    void cosineMaxScoreMatchesExhaustive() {
+        CosineSimilarity cosine = new CosineSimilarity();
+        for (SparseVector termCounts : queries(new Random(7), 300)) {
+            SparseVector queryVector = cosine.queryVector(termCounts, termCounts.size(), snapshot);
+            for (int topK : TOP_K) {
+                assertSameRanking(cosine.rankDocumentsExhaustive(queryVector, snapshot, topK),
+                        cosine.rankDocuments(queryVector, snapshot, topK));
+            }
+        }
+    }
+
+    @Test
+    void cosineParallelMatchesExhaustive() {
+        CosineSimilarity cosine = new CosineSimilarity();
+        CosineSimilarity parallel = new CosineSimilarity(pool, 1);
+        for (SparseVector termCounts : queries(new Random(11), 200)) {
+            SparseVector queryVector = cosine.queryVector(termCounts, termCounts.size(), snapshot);
+            for (int topK : TOP_K) {
+                assertSameRanking(cosine.rankDocumentsExhaustive(queryVector, snapshot, topK),
+                        parallel.rankDocuments(queryVector, snapshot, topK));
+            }
+        }
+    }
+
+    @Test
+    void bm25MaxScoreMatchesExhaustive() {
+        Bm25 bm25 = new Bm25();
+        for (SparseVector termCounts : queries(new Random(13), 300)) {
+            for (int topK : TOP_K) {
+                assertSameRanking(bm25.rankDocumentsExhaustive(termCounts, snapshot, topK),
+                        bm25.rankDocuments(termCounts, snapshot, topK));
+            }
+        }
+    }
+
+    /** Queries of frequent terms only take the dense path, or the partitions with a pool */
+    @Test
+    void frequentTermsMatchExhaustive() {
+        CosineSimilarity cosine = new CosineSimilarity();
+        CosineSimilarity parallel = new CosineSimilarity(pool, 1);
+        for (int first = 0; first < 4; first++) {
+            SparseVector.Builder termCounts = new SparseVector.Builder();
+            for (int i = first; i < first + 5; i++) {
+                termCounts.add(snapshot.getTermId("t" + i), 1.0f);
+            }
+            SparseVector queryVector = cosine.queryVector(termCounts.build(), 5, snapshot);
+            long postings = 0;
+            for (int q = 0; q < queryVector.size(); q++) {
+                postings += snapshot.getDocumentFrequency(queryVector.getTermId(q));
+            }
+            // CosineSimilarity gives a partition at least 25,000 postings
+            assertTrue(postings >= 2 * 25_000, "too few postings to rank in partitions: " + postings);
+
+            for (int topK : TOP_K) {
+                List<TopKCollector.ScoredDocument> exhaustive = cosine.rankDocumentsExhaustive(queryVector, snapshot, topK);
+                assertSameRanking(exhaustive, cosine.rankDocuments(queryVector, snapshot, topK));
+                assertSameRanking(exhaustive, parallel.rankDocuments(queryVector, snapshot, topK));
+            }
+        }
+    }
+
+    /** The index really has what the comparisons are meant to cover */
+    @Test
+    void indexHasTiesDeletionsAndDenseTerms() {
+        assertEquals(SEGMENT_SIZES.length, snapshot.getSegments().size());
+        assertTrue(snapshot.getLiveDocumentCount() < snapshot.getDocumentCount());
+        IndexSnapshot.Segment segment = snapshot.getSegments().get(0);
+        assertNotNull(segment.getIndex().getDenseCounts(segment.getLocalTermId(snapshot.getTermId("t0"))));
+
+        // The duplicate of a document scores the same, and a deleted one is never returned
+        CosineSimilarity cosine = new CosineSimilarity();
+        SparseVector.Builder termCounts = new SparseVector.Builder();
+        termCounts.add(snapshot.getTermId("t20"), 1.0f);
+        List<TopKCollector.ScoredDocument> results = cosine.rankDocuments(
+                cosine.queryVector(termCounts.build(), 1, snapshot), snapshot, 1000);
+        boolean tied = false;
+        for (int i = 0; i < results.size(); i++) {
+            assertTrue(snapshot.isLive(results.get(i).getDocId()));
+            tied |= i > 0 && results.get(i).getScore() == results.get(i - 1).getScore();
+        }
+        assertTrue(tied, "no tied scores");
+    }
+
+    /**
+     * Same scores, rank by rank; documents may only swap places when their scores are tied.
+     */
+    private static void assertSameRanking(List<TopKCollector.ScoredDocument> expected,
+                                          List<TopKCollector.ScoredDocument> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            double score = expected.get(i).getScore();
+            assertEquals(score, actual.get(i).getScore(), 1e-9 * score, "score at rank " + i);
+            if (expected.get(i).getDocId() != actual.get(i).getDocId()) {
+                assertTrue(tiedAt(expected, i), "document at rank " + i + " differs without a tie");
+            }
+            assertTrue(snapshot.isLive(actual.get(i).getDocId()), "deleted document at rank " + i);
+        }
+    }
+
+    private static boolean tiedAt(List<TopKCollector.ScoredDocument> ranking, int i) {
+        double score = ranking.get(i).getScore();
+        double tolerance = 1e-12 * score;
+        return (i > 0 && Math.abs(ranking.get(i - 1).getScore() - score) <= tolerance)
+                || (i + 1 < ranking.size() && Math.abs(ranking.get(i + 1).getScore() - score) <= tolerance)
+                || i == ranking.size() - 1;
+    }
+
+    /** 1-5 term queries, each term frequent or rare with the document distribution */
+    private static List<SparseVector> queries(Random random, int count) {
+        List<SparseVector> queries = new ArrayList<>();
+        while (queries.size() < count) {
+            SparseVector.Builder termCounts = new SparseVector.Builder();
+            Set<Integer> termIds = new HashSet<>();
+            int terms = 1 + random.nextInt(5);
+            for (int i = 0; i < terms; i++) {
+                String term = random.nextBoolean() ? term(random) : "t" + random.nextInt(VOCABULARY_SIZE);
+                int termId = snapshot.getTermId(term);
+                if (termId >= 0 && termIds.add(termId)) {
+                    termCounts.add(termId, 1.0f);
+                }
+            }
+            if (!termIds.isEmpty()) {
+                queries.add(termCounts.build());
+            }
+        }
+        return queries;
+    }
+
+    private static String term(Random random) {
+        int i = Arrays.binarySearch(cumulative, random.nextDouble());
+        return "t" + Math.min(i < 0 ? -i - 1 : i, VOCABULARY_SIZE - 1);
+    }
+}